@@ -21,6 +21,14 @@ public class Main {
 
         DistroDetector.detectAndSaveDistro();
 
+        if (args.length > 0 && "--bench-storage".equals(args[0])) {
+            try { LingleState.loadState(); } catch (IOException ignored) {}
+            System.exit(StorageBenchmark.run(args));
+        }
+        if (args.length > 0 && "--bench-hugepages".equals(args[0])) {
+            System.exit(HugePageBenchmark.run(args));
+        }
+
         boolean nogui = args.length > 0 && "--nogui".equals(args[0]);
 
         if (!nogui && System.getenv("DISPLAY") == null && System.getenv("WAYLAND_DISPLAY") == null) {
@@ -28,27 +36,33 @@ public class Main {
         }
 
         try {
-            TmpfsScriptManager.ensureScriptsPresent();
+            LingleState.loadState();
         } catch (IOException e) {
-            String msg = "Failed to create scripts: " + e.getMessage();
+            String msg = "Failed to load configuration: " + e.getMessage();
             if (nogui) {
-                ErrorCodes.exit(ErrorCodes.IO_ERROR, msg);
+                ErrorCodes.exit(ErrorCodes.CONFIG_ERROR, msg);
             } else {
-                ErrorCodes.exitWithDialog(null, ErrorCodes.IO_ERROR, "Initialization Error", msg);
+                ErrorCodes.exitWithDialog(null, ErrorCodes.CONFIG_ERROR, "Configuration Error", msg);
             }
         }
 
+        // The enable script carries the tmpfs size, which depends on the loaded config
         try {
-            LingleState.loadState();
+            TmpfsScriptManager.ensureScriptsPresent();
         } catch (IOException e) {
-            String msg = "Failed to load configuration: " + e.getMessage();
+            String msg = "Failed to create scripts: " + e.getMessage();
             if (nogui) {
-                ErrorCodes.exit(ErrorCodes.CONFIG_ERROR, msg);
+                ErrorCodes.exit(ErrorCodes.IO_ERROR, msg);
             } else {
-                ErrorCodes.exitWithDialog(null, ErrorCodes.CONFIG_ERROR, "Configuration Error", msg);
+                ErrorCodes.exitWithDialog(null, ErrorCodes.IO_ERROR, "Initialization Error", msg);
             }
         }
 
+        TmpfsScriptManager.ensureMounted();
+        LinkInstancesService.recoverStagedSlots();
+        TmpfsSizer.refreshAutoSizeInBackground();
+        WorldReclaimer.reclaimLeftovers();
+
         try {
             String jarPath = Main.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath();
             String homeRelative = WaywallConfig.toHomeRelative(java.nio.file.Path.of(jarPath));
@@ -79,13 +93,17 @@ public class Main {
             }
         }
 
+        WorldBopperManager.startDaemon();
+        TmpfsSnapshot.start();
+        SubmissionCache.start();
+        ConfigWatcher.start();
+
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             AdwManager.stopAdwQuietly();
-            if (LingleState.worldBopperEnabled) {
-                try {
-                    WorldBopperManager.runOnce();
-                } catch (Exception ignored) {}
-            }
+            WorldBopperManager.stopDaemon();
+            TmpfsSnapshot.stop();
+            SubmissionCache.stop();
+            ConfigWatcher.stop();
         }));
 
         if (nogui) {
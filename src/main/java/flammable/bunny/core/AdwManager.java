@@ -1,66 +1,161 @@
 package flammable.bunny.core;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 public class AdwManager {
-    private static Process adwProcess = null;
+    private static final int KEEP_NEWEST = 6;
+
+    private static WatchService watcher = null;
+    private static Thread adwThread = null;
+    private static Map<WatchKey, Path> watchKeys = null;
 
-    public static void startAdwIfNeeded() {
-        if (!LingleState.adwEnabled || !LingleState.enabled) return;
+    public static synchronized void startAdwIfNeeded() {
+        if (!active(LingleConfig.current())) return;
         stopAdwQuietly();
 
         try {
-            Path home = Path.of(System.getProperty("user.home"));
-            Path scriptsDir = home.resolve(".local/share/lingle/scripts");
-            Files.createDirectories(scriptsDir);
-
-            Path script = scriptsDir.resolve("auto_delete_worlds_tmpfs.sh");
-            Files.writeString(script, generateScript(home), StandardCharsets.UTF_8);
-            script.toFile().setExecutable(true);
-
-            adwProcess = new ProcessBuilder("/bin/bash", script.toString())
-                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
-                    .redirectError(ProcessBuilder.Redirect.DISCARD)
-                    .start();
-        } catch (IOException ignored) {
-            adwProcess = null;
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+            registerInstanceDirs(ws, keys);
+
+            watcher = ws;
+            watchKeys = keys;
+            adwThread = new Thread(() -> watchLoop(ws, keys), "lingle-adw");
+            adwThread.setDaemon(true);
+            adwThread.start();
+
+            TmpfsPressureReclaimer.start();
+        } catch (IOException e) {
+            LingleLogger.logError("Failed to start ADW", e);
+            watcher = null;
+            adwThread = null;
         }
     }
 
-    private static String generateScript(Path home) {
-        long pid = ProcessHandle.current().pid();
-        int X = Math.max(0, LingleState.instanceCount);
-        int S = Math.max(1, LingleState.adwIntervalSeconds);
-        Path cfg = home.resolve(".local/share/lingle/config.json");
-
-        return "#!/bin/bash\nset -euo pipefail\n" +
-                "APP_PID=" + pid + "\n" +
-                "CFG=\"" + cfg + "\"\n" +
-                "USER_HOME=\"" + home + "\"\n" +
-                "X=" + X + "\nSLEEP_SECS=" + S + "\n" +
-                "while true; do\n" +
-                "  if [ ! -d /proc/${APP_PID} ]; then exit 0; fi\n" +
-                "  if ! grep -q '\"adw\": true' \"$CFG\"; then exit 0; fi\n" +
-                "  for i in $(seq 1 ${X}); do\n" +
-                "    LDIR=\"${USER_HOME}/Lingle/${i}\"\n" +
-                "    [ -d \"$LDIR\" ] || continue\n" +
-                "    for save in $(ls \"$LDIR\" -t1 --ignore='Z*' 2>/dev/null | tail -n +7); do\n" +
-                "      rm -rf \"${LDIR}/${save}\"\n" +
-                "    done\n" +
-                "  done\n" +
-                "  sleep ${SLEEP_SECS}\n" +
-                "done\n";
+    public static synchronized void stopAdwQuietly() {
+        TmpfsPressureReclaimer.stop();
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {}
+        try {
+            if (adwThread != null) {
+                adwThread.interrupt();
+                adwThread.join(2000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watcher = null;
+        adwThread = null;
+        watchKeys = null;
     }
 
-    public static void stopAdwQuietly() {
+    // Called when config.json changed outside Lingle. A new interval needs nothing, the watch loop
+    // reads it before its next wait; new slots are watched right away.
+    public static synchronized void reconfigure(LingleConfig before, LingleConfig after) {
+        if (active(before) != active(after)) {
+            if (active(after)) startAdwIfNeeded(); else stopAdwQuietly();
+            return;
+        }
+        if (watcher == null || after.instanceCount() <= before.instanceCount()) return;
         try {
-            if (adwProcess != null) {
-                adwProcess.destroy();
-                adwProcess.waitFor();
+            registerInstanceDirs(watcher, watchKeys);
+        } catch (ClosedWatchServiceException ignored) {}
+    }
+
+    private static boolean active(LingleConfig cfg) {
+        return cfg.adw().enabled() && cfg.tmpfs().enabled();
+    }
+
+    private static Path lingleDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle");
+    }
+
+    // Registers every ~/Lingle/N that is not watched yet and prunes it once, so worlds
+    // created while nothing was watching are handled too.
+    // Runs on the ADW thread and, after a config reload, on the watcher thread. A folder that
+    // cannot be watched, e.g. one removed meanwhile or past the inotify limit, is logged and tried
+    // again on the next sweep.
+    private static void registerInstanceDirs(WatchService ws, Map<WatchKey, Path> keys) {
+        int max = LingleConfig.current().instanceCount();
+        for (int i = 1; i <= max; i++) {
+            Path ldir = lingleDir().resolve(String.valueOf(i));
+            synchronized (keys) {
+                if (!Files.isDirectory(ldir) || keys.containsValue(ldir)) continue;
+                try {
+                    keys.put(ldir.register(ws, ENTRY_CREATE, ENTRY_DELETE), ldir);
+                } catch (IOException e) {
+                    LingleLogger.logError("ADW failed to watch " + ldir, e);
+                    continue;
+                }
+            }
+            pruneDir(WorldIndex.current(ldir));
+        }
+    }
+
+    private static void watchLoop(WatchService ws, Map<WatchKey, Path> keys) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Read once per wait so a save on the UI thread is seen whole
+                LingleConfig cfg = LingleConfig.current();
+                if (!active(cfg)) return;
+
+                // The interval is only a safety net now; new worlds are handled as soon as they appear.
+                WatchKey key = ws.poll(cfg.adw().intervalSeconds(), TimeUnit.SECONDS);
+                if (key == null) {
+                    registerInstanceDirs(ws, keys);
+                    CleanupPool.forEachDir("ADW", new ArrayList<>(keys.values()),
+                            d -> pruneDir(WorldIndex.current(d)), false);
+                    continue;
+                }
+
+                Path dir = keys.get(key);
+                if (dir == null) {
+                    key.cancel();
+                    continue;
+                }
+                WorldIndex index = WorldIndex.current(dir);
+                boolean created = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        index.rescan();
+                        created = true;
+                        continue;
+                    }
+                    String name = ((Path) event.context()).getFileName().toString();
+                    if (event.kind() == ENTRY_CREATE) {
+                        index.onCreated(name);
+                        created = true;
+                    } else if (event.kind() == ENTRY_DELETE) {
+                        index.onDeleted(name);
+                    }
+                }
+                if (created) pruneDir(index);
+                if (!key.reset()) keys.remove(key);
             }
-        } catch (Exception ignored) {}
-        adwProcess = null;
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    // Keeps the newest KEEP_NEWEST worlds of an instance directory, never touching Z* practice maps
+    // or hidden entries.
+    static int pruneDir(WorldIndex index) {
+        if (index.size() <= KEEP_NEWEST) return 0;
+        List<WorldIndex.Entry> worlds = index.byRecentActivity(WorldIndex.Kind.WORLD);
+        List<WorldIndex.Entry> surplus = worlds.subList(Math.min(KEEP_NEWEST, worlds.size()), worlds.size());
+        for (WorldIndex.Entry e : surplus) {
+            WorldReclaimer.discard(index.dir().resolve(e.name));
+            index.onDeleted(e.name);
+        }
+        return surplus.size();
     }
 }
@@ -0,0 +1,100 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+// Bounded pool that ADW and WorldBopper use to clean several instance directories at once. Each
+// directory is one task that works through its own worlds, so a slow instance only delays itself.
+// Instance linking borrows it for its per-instance filesystem work as well.
+public final class CleanupPool {
+
+    private static final AtomicInteger threadIds = new AtomicInteger();
+    private static ThreadPoolExecutor pool = null;
+    private static int poolSize = 0;
+
+    private CleanupPool() {}
+
+    public static int threads() {
+        int configured = LingleConfig.current().cleanupThreads();
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static synchronized ExecutorService pool() {
+        int size = threads();
+        if (pool == null || poolSize != size) {
+            if (pool != null) pool.shutdown();
+            pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "lingle-cleanup-" + threadIds.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            poolSize = size;
+        }
+        return pool;
+    }
+
+    // Runs work once per directory and waits for all of them. work returns how many worlds it
+    // removed; directories where nothing was removed are only logged when logIdle is set.
+    public static void forEachDir(String label, Collection<Path> dirs, ToIntFunction<Path> work, boolean logIdle) {
+        if (dirs.isEmpty()) return;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Path dir : dirs) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                int removed = 0;
+                try {
+                    removed = work.applyAsInt(dir);
+                } catch (Exception e) {
+                    LingleLogger.logError(label + ": cleanup of " + dir + " failed", e);
+                }
+                long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (removed > 0 || logIdle) {
+                    LingleLogger.logInfo(label + ": " + dir + " - removed " + removed + " world(s) in " + ms + " ms");
+                }
+                return null;
+            });
+        }
+        try {
+            pool().invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs every task and waits for all of them, then rethrows the first failure
+    public static void runAll(List<Callable<Void>> tasks) throws IOException {
+        List<Future<Void>> results;
+        try {
+            results = pool().invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        IOException failure = null;
+        for (Future<Void> f : results) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (failure != null) continue;
+                failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,119 @@
+package flammable.bunny.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+// Decides per file whether the submission packager stores or deflates it. Region chunks, NBT,
+// PNGs and archives are compressed already, so deflating them again only burns CPU; text is
+// deflated; anything else gets a quick deflate of a few samples and is stored if that barely shrinks.
+public final class CompressionPolicy {
+
+    public enum Category { REGION, NBT, IMAGE, ARCHIVE, TEXT, OTHER }
+
+    private static final int SAMPLE = 16 * 1024;
+    // Deflating the samples has to save at least this share of the bytes to be worth it
+    private static final double MIN_SAVING = 0.05;
+
+    private CompressionPolicy() {}
+
+    public static int level() {
+        return Math.max(1, Math.min(9, LingleConfig.current().submission().deflateLevel()));
+    }
+
+    public static int threads() {
+        int configured = LingleConfig.current().submission().threads();
+        return configured > 0 ? configured : CleanupPool.threads();
+    }
+
+    public static Category categorize(String name) {
+        String n = name.toLowerCase(Locale.ROOT);
+        if (n.endsWith(".mca") || n.endsWith(".mcc")) return Category.REGION;
+        if (n.endsWith(".dat") || n.endsWith(".dat_old") || n.endsWith(".nbt")) return Category.NBT;
+        if (n.endsWith(".png")) return Category.IMAGE;
+        if (n.endsWith(".zip") || n.endsWith(".gz") || n.endsWith(".jar")) return Category.ARCHIVE;
+        if (n.endsWith(".json") || n.endsWith(".txt") || n.endsWith(".log") || n.endsWith(".mcmeta")
+                || n.endsWith(".properties") || n.endsWith(".toml") || n.endsWith(".lua")) return Category.TEXT;
+        return Category.OTHER;
+    }
+
+    public static boolean store(Category category, byte[] data) {
+        return switch (category) {
+            case REGION, NBT, IMAGE, ARCHIVE -> true;
+            case TEXT -> false;
+            case OTHER -> !worthDeflating(data);
+        };
+    }
+
+    // Start, middle and end of the file at the fastest level
+    private static boolean worthDeflating(byte[] data) {
+        if (data.length <= SAMPLE * 3) return deflatedSize(data, 0, data.length) < data.length * (1 - MIN_SAVING);
+        long in = 0, out = 0;
+        for (int off : new int[]{0, data.length / 2 - SAMPLE / 2, data.length - SAMPLE}) {
+            in += SAMPLE;
+            out += deflatedSize(data, off, SAMPLE);
+        }
+        return out < in * (1 - MIN_SAVING);
+    }
+
+    private static long deflatedSize(byte[] data, int off, int len) {
+        Deflater d = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            d.setInput(data, off, len);
+            d.finish();
+            byte[] scratch = new byte[8192];
+            while (!d.finished()) d.deflate(scratch);
+            return d.getBytesWritten();
+        } finally {
+            d.end();
+        }
+    }
+
+    static long cpuNanos() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    // Bytes in, bytes out and CPU time per category, added to from every packaging thread, plus the
+    // worlds taken from the submission cache as they are
+    public static final class Stats {
+        private final Map<Category, LongAdder[]> totals = new EnumMap<>(Category.class);
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder cachedBytes = new LongAdder();
+
+        public Stats() {
+            for (Category c : Category.values()) totals.put(c, new LongAdder[]{new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()});
+        }
+
+        public void add(Category category, long bytesIn, long bytesOut, long cpuNanos) {
+            LongAdder[] t = totals.get(category);
+            t[0].increment();
+            t[1].add(bytesIn);
+            t[2].add(bytesOut);
+            t[3].add(cpuNanos);
+        }
+
+        public void cacheHit(long bytes) {
+            cacheHits.increment();
+            cachedBytes.add(bytes);
+        }
+
+        public void log() {
+            for (Map.Entry<Category, LongAdder[]> e : totals.entrySet()) {
+                LongAdder[] t = e.getValue();
+                if (t[0].sum() == 0) continue;
+                LingleLogger.logInfo(String.format(Locale.ROOT, "  %-7s %6d file(s) %9.1f MB -> %9.1f MB, %6d ms CPU",
+                        e.getKey().name().toLowerCase(Locale.ROOT), t[0].sum(), t[1].sum() / 1048576.0,
+                        t[2].sum() / 1048576.0, t[3].sum() / 1_000_000));
+            }
+            if (cacheHits.sum() > 0) {
+                LingleLogger.logInfo(String.format(Locale.ROOT, "  %-7s %6d world(s) %9.1f MB from the submission cache",
+                        "cached", cacheHits.sum(), cachedBytes.sum() / 1048576.0));
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Owns writes to ~/.local/share/lingle/config.json. Saves are coalesced for a short moment, skipped
+// when the text did not change, and land through a fsynced temp file renamed over the old config,
+// so a crash leaves either the old or the new file and never a truncated one.
+public final class ConfigStore {
+
+    private static final long DEBOUNCE_MS = 250;
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lingle-config");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static String pending = null;
+    private static String written = null;
+    private static ScheduledFuture<?> scheduled = null;
+
+    // Also covers the early exits in Main that happen before its own shutdown hook exists
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ConfigStore::flush, "lingle-config-flush"));
+    }
+
+    private ConfigStore() {}
+
+    public static Path path() {
+        return Path.of(System.getProperty("user.home"), ".local", "share", "lingle", "config.json");
+    }
+
+    // The newest config text, including a save that has not reached the disk yet
+    public static synchronized String read() throws IOException {
+        if (pending != null) return pending;
+        Path cfg = path();
+        return Files.exists(cfg) ? Files.readString(cfg) : null;
+    }
+
+    public static synchronized void save(String json) {
+        if (json.equals(pending) || (pending == null && json.equals(written))) return;
+        pending = json;
+        if (scheduled == null || scheduled.isDone()) {
+            scheduled = writer.schedule(ConfigStore::flush, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // For callers that start something reading config.json right after saving
+    public static synchronized void saveNow(String json) {
+        pending = json;
+        flush();
+    }
+
+    public static synchronized void flush() {
+        if (pending == null) return;
+        String json = pending;
+        pending = null;
+        try {
+            if (written == null && Files.exists(path())) written = Files.readString(path());
+            if (json.equals(written)) return;
+            writeAtomically(path(), json);
+            written = json;
+        } catch (IOException e) {
+            LingleLogger.logError("Failed to write " + path(), e);
+        }
+    }
+
+    // Lets ConfigWatcher tell our own renames apart from edits made outside Lingle
+    static synchronized boolean isOwnWrite(String text) {
+        return text.equals(written) || text.equals(pending);
+    }
+
+    // An external edit that was loaded is what is on disk now, so saving the same values again is a
+    // no-op. A save still waiting for the debounce holds the values from before the edit and is dropped,
+    // otherwise it would overwrite the edit and then be ignored as our own write.
+    static synchronized void adopt(String text) {
+        pending = null;
+        if (scheduled != null) scheduled.cancel(false);
+        scheduled = null;
+        written = text;
+    }
+
+    private static void writeAtomically(Path target, String content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename itself only survives a crash once the directory is synced
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,131 @@
+package flammable.bunny.core;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.*;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+// Reloads config.json when something other than Lingle changes it, e.g. the user editing it by hand,
+// and tells the running parts what changed so they adjust in place: ADW and WorldBopper read the
+// new snapshot on their next pass, and only a flipped on/off switch or new instances need action.
+public final class ConfigWatcher {
+
+    // Editors often write a file in several steps; wait for them to finish
+    private static final long SETTLE_MS = 200;
+
+    private static WatchService watcher = null;
+    private static Thread thread = null;
+
+    private ConfigWatcher() {}
+
+    public static synchronized void start() {
+        stop();
+        Path cfg = ConfigStore.path();
+        try {
+            Files.createDirectories(cfg.getParent());
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            // ConfigStore replaces the file by rename, so the directory is watched and not the file
+            cfg.getParent().register(ws, ENTRY_CREATE, ENTRY_MODIFY);
+            watcher = ws;
+            thread = new Thread(() -> watchLoop(ws, cfg), "lingle-config-watch");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            LingleLogger.logError("Failed to watch " + cfg, e);
+        }
+    }
+
+    public static synchronized void stop() {
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {}
+        watcher = null;
+        thread = null;
+    }
+
+    private static void watchLoop(WatchService ws, Path cfg) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (cfg.getFileName().equals(event.context())) touched = true;
+                }
+                key.reset();
+                if (!touched) continue;
+
+                // Collapse the rest of a burst into this reload
+                WatchKey more;
+                while ((more = ws.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                reload(cfg);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    private static void reload(Path cfg) {
+        String text;
+        try {
+            if (!Files.exists(cfg)) return;
+            text = Files.readString(cfg);
+        } catch (IOException e) {
+            return;
+        }
+        if (ConfigStore.isOwnWrite(text)) return;
+
+        LingleConfig after;
+        try {
+            after = LingleConfig.parse(text);
+        } catch (Exception e) {
+            // Probably saved halfway through editing; the next save triggers another reload
+            LingleLogger.logError("Ignoring config.json change, it is not valid JSON: " + e.getMessage());
+            return;
+        }
+        // The UI edits LingleState on the EDT, so the reload is applied there as one step
+        LingleConfig[] before = new LingleConfig[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                before[0] = LingleConfig.current();
+                ConfigStore.adopt(text);
+                LingleState.applyExternal(after);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (InvocationTargetException e) {
+            LingleLogger.logError("Applying the edited config.json failed: " + e.getCause());
+            return;
+        }
+        LingleLogger.logInfo("Reloaded config.json after an external change");
+        publish(before[0], after);
+    }
+
+    private static void publish(LingleConfig before, LingleConfig after) {
+        if (!Objects.equals(before.adw(), after.adw()) || before.tmpfs().enabled() != after.tmpfs().enabled()
+                || before.instanceCount() != after.instanceCount()) {
+            AdwManager.reconfigure(before, after);
+        }
+        if (!Objects.equals(before.worldBopper(), after.worldBopper()) || before.tmpfs().enabled() != after.tmpfs().enabled()) {
+            WorldBopperManager.reconfigure(before, after);
+        }
+        if (!before.linkedInstances().equals(after.linkedInstances())) {
+            LinkInstancesService.reconfigure(before.linkedInstances(), after.linkedInstances());
+        }
+        if (!Objects.equals(before.snapshot(), after.snapshot())) TmpfsSnapshot.start();
+        if (before.snapshot().enabled() != after.snapshot().enabled()) {
+            try {
+                LinkInstancesService.refreshStartupScript();
+            } catch (IOException e) {
+                LingleLogger.logError("Failed to update the startup script", e);
+            }
+        }
+        if (!Objects.equals(before.submission(), after.submission())) SubmissionCache.start();
+    }
+}
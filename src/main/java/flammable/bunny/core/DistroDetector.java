@@ -7,35 +7,35 @@ import java.util.List;
 
 public final class DistroDetector {
 
-    private static final Path CONFIG_PATH = Path.of(System.getProperty("user.home"))
-            .resolve(".local/share/lingle/config.json");
+    // Neither changes while Lingle runs, so each is looked up once
+    private static volatile String cachedDistro = null;
+    private static volatile String cachedGpu = null;
 
     private DistroDetector() {}
 
     public static void detectAndSaveDistro() {
         String distro = detectDistro();
         String gpu = detectGPU();
+        cachedDistro = distro;
+        cachedGpu = gpu;
+        JSONObject cfg = new JSONObject();
         try {
-            Files.createDirectories(CONFIG_PATH.getParent());
-            JSONObject cfg = new JSONObject();
-            if (Files.exists(CONFIG_PATH)) {
-                try (BufferedReader r = Files.newBufferedReader(CONFIG_PATH)) {
-                    cfg = new JSONObject(r.lines().reduce("", (a, b) -> a + b));
-                } catch (Exception ignored) {}
-            }
-            cfg.put("distro", distro);
-            cfg.put("gpu", gpu);
-            try (BufferedWriter w = Files.newBufferedWriter(CONFIG_PATH)) {
-                w.write(cfg.toString(2));
-            }
-        } catch (IOException ignored) {}
+            String existing = ConfigStore.read();
+            if (existing != null) cfg = new JSONObject(existing);
+        } catch (Exception ignored) {}
+        cfg.put("distro", distro);
+        cfg.put("gpu", gpu);
+        ConfigStore.saveNow(cfg.toString(2));
     }
 
     public static String getDistro() {
-        String distro = readDistroFromConfig();
+        String distro = cachedDistro;
+        if (distro != null) return distro;
+        distro = readFromConfig("distro");
         if (distro == null || distro.equals("unknown")) {
             distro = detectDistro();
         }
+        cachedDistro = distro;
         return distro;
     }
 
@@ -53,15 +53,12 @@ public final class DistroDetector {
         };
     }
 
-    private static String readDistroFromConfig() {
+    private static String readFromConfig(String key) {
         try {
-            if (Files.exists(CONFIG_PATH)) {
-                String json = Files.readString(CONFIG_PATH);
-                JSONObject obj = new JSONObject(json);
-                return obj.optString("distro", "unknown");
-            }
+            String json = ConfigStore.read();
+            if (json != null) return new JSONObject(json).optString(key, "unknown");
         } catch (Exception ignored) {}
-        return "unknown";
+        return null;
     }
 
     private static String detectDistro() {
@@ -77,14 +74,12 @@ public final class DistroDetector {
     }
 
     public static String getGPU() {
-        try {
-            if (Files.exists(CONFIG_PATH)) {
-                String json = Files.readString(CONFIG_PATH);
-                JSONObject obj = new JSONObject(json);
-                return obj.optString("gpu", "unknown");
-            }
-        } catch (Exception ignored) {}
-        return detectGPU();
+        String gpu = cachedGpu;
+        if (gpu != null) return gpu;
+        gpu = readFromConfig("gpu");
+        if (gpu == null) gpu = detectGPU();
+        cachedGpu = gpu;
+        return gpu;
     }
 
     private static String detectGPU() {
@@ -0,0 +1,137 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Measures whether huge pages help the ~/Lingle tmpfs on this kernel before they are turned on.
+// A scratch tmpfs is mounted once per huge= mode and the Anvil write pattern is replayed on it:
+// chunks appended in 4 KiB sectors with the location table rewritten after every chunk, followed
+// by a mapped read of every region file the way the header scanner and the game read them.
+// Run with: java -jar Lingle.jar --bench-hugepages [regions]
+public final class HugePageBenchmark {
+
+    private static final String[] MODES = {"never", "within_size", "advise"};
+    private static final int DEFAULT_REGIONS = 32;
+    // Each region needs 8 MB of the scratch tmpfs
+    private static final int MAX_REGIONS = 1024;
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final int SECTOR = 4096;
+
+    // Keeps the JIT from dropping the read loop
+    private static volatile long sink;
+
+    private record Result(String mode, long writeNanos, long readNanos, long faults, long hugeKb) {}
+
+    private HugePageBenchmark() {}
+
+    public static int run(String[] args) {
+        int regions = DEFAULT_REGIONS;
+        if (args.length > 1) {
+            try {
+                regions = Integer.parseInt(args[1]);
+            } catch (NumberFormatException ignored) {
+                regions = 0;
+            }
+            if (regions < 1 || regions > MAX_REGIONS) {
+                System.err.println("Usage: java -jar Lingle.jar --bench-hugepages [regions, 1-" + MAX_REGIONS + "]");
+                return 2;
+            }
+        }
+        Path shmemEnabled = Path.of("/sys/kernel/mm/transparent_hugepage/shmem_enabled");
+        try {
+            if (Files.exists(shmemEnabled)) {
+                System.out.println("shmem_enabled: " + Files.readString(shmemEnabled).trim());
+            } else {
+                System.out.println("This kernel has no transparent huge page support for tmpfs");
+                return 1;
+            }
+        } catch (IOException ignored) {}
+
+        Path base = Path.of(System.getProperty("java.io.tmpdir")).resolve("lingle-hugepages-" + ProcessHandle.current().pid());
+        List<Result> results = new ArrayList<>();
+        for (String mode : MODES) {
+            Path dir = base.resolve(mode);
+            try {
+                Files.createDirectories(dir);
+                String uid = String.valueOf(Files.getAttribute(dir, "unix:uid"));
+                String gid = String.valueOf(Files.getAttribute(dir, "unix:gid"));
+                String mount = "mount -t tmpfs -o size=" + (regions * 8 + 64) + "m,huge=" + mode
+                        + ",mode=0700,uid=" + uid + ",gid=" + gid + " tmpfs '" + dir + "'";
+                if (ElevatedInstaller.runElevatedBash(mount) != 0) {
+                    System.err.println("Failed to mount a tmpfs with huge=" + mode);
+                    continue;
+                }
+                results.add(replay(mode, dir, regions));
+            } catch (Exception e) {
+                System.err.println("huge=" + mode + " failed: " + e.getMessage());
+            } finally {
+                try { ElevatedInstaller.runElevatedBash("umount '" + dir + "' 2>/dev/null; rmdir '" + dir + "'"); }
+                catch (Exception ignored) {}
+            }
+        }
+        try { Files.deleteIfExists(base); } catch (IOException ignored) {}
+
+        System.out.printf("%n%-12s %12s %12s %14s %12s%n", "huge=", "write ms", "read ms", "minor faults", "huge MB");
+        for (Result r : results) {
+            System.out.printf("%-12s %12.1f %12.1f %14d %12.1f%n", r.mode, r.writeNanos / 1e6, r.readNanos / 1e6,
+                    r.faults, r.hugeKb / 1024.0);
+        }
+        return results.isEmpty() ? 1 : 0;
+    }
+
+    private static Result replay(String mode, Path dir, int regions) throws IOException {
+        Random random = new Random(7);
+        byte[] payload = new byte[3 * SECTOR];
+        ByteBuffer entry = ByteBuffer.allocate(4);
+        long hugeBefore = StorageBenchmark.memInfoKb("ShmemHugePages");
+
+        long start = System.nanoTime();
+        for (int r = 0; r < regions; r++) {
+            Path file = dir.resolve("r." + r + ".0.mca");
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.allocate(2 * SECTOR), 0);
+                long sector = 2;
+                for (int c = 0; c < CHUNKS_PER_REGION / 2; c++) {
+                    int sectors = 1 + random.nextInt(3);
+                    random.nextBytes(payload);
+                    ch.write(ByteBuffer.wrap(payload, 0, sectors * SECTOR), sector * SECTOR);
+                    entry.clear();
+                    entry.putInt((int) (sector << 8) | sectors).flip();
+                    ch.write(entry, c * 4L);
+                    sector += sectors;
+                }
+            }
+        }
+        long writeNanos = System.nanoTime() - start;
+        long hugeKb = StorageBenchmark.memInfoKb("ShmemHugePages") - hugeBefore;
+
+        long faultsBefore = minorFaults();
+        start = System.nanoTime();
+        long sum = 0;
+        for (int r = 0; r < regions; r++) {
+            try (FileChannel ch = FileChannel.open(dir.resolve("r." + r + ".0.mca"), StandardOpenOption.READ)) {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                for (int i = 0; i < map.limit(); i += SECTOR) sum += map.get(i);
+            }
+        }
+        long readNanos = System.nanoTime() - start;
+        long faults = minorFaults() - faultsBefore;
+        sink = sum;
+        return new Result(mode, writeNanos, readNanos, faults, hugeKb);
+    }
+
+    // Field 10 of /proc/self/stat, counted after the parenthesised command name
+    private static long minorFaults() throws IOException {
+        String stat = Files.readString(Path.of("/proc/self/stat"));
+        String[] f = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        return Long.parseLong(f[7]);
+    }
+}
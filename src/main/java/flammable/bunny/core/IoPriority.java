@@ -0,0 +1,37 @@
+package flammable.bunny.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Puts the calling thread into the idle I/O class so background copies only get the disk when the
+// instances leave it alone. ionice works per kernel thread, so the thread id comes from
+// /proc/thread-self, which links to <pid>/task/<tid>.
+public final class IoPriority {
+
+    private IoPriority() {}
+
+    public static void idleForCurrentThread() {
+        runForCurrentThread("ionice", "-c", "3", "-p");
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+    }
+
+    // Java thread priorities do not reach the Linux scheduler, so the nice value is set directly
+    public static void lowestCpuForCurrentThread() {
+        runForCurrentThread("renice", "-n", "19", "-p");
+    }
+
+    private static void runForCurrentThread(String... command) {
+        try {
+            Path self = Files.readSymbolicLink(Path.of("/proc/thread-self"));
+            String[] cmd = Arrays.copyOf(command, command.length + 1);
+            cmd[command.length] = self.getFileName().toString();
+            Process p = new ProcessBuilder(cmd)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroyForcibly();
+        } catch (Exception ignored) {}
+    }
+}
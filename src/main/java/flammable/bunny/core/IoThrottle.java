@@ -0,0 +1,23 @@
+package flammable.bunny.core;
+
+import java.util.concurrent.TimeUnit;
+
+// Sleeps whenever the bytes copied so far run ahead of a MB/s budget; 0 means unlimited
+final class IoThrottle {
+
+    private final long bytesPerSecond;
+    private final long start = System.nanoTime();
+    private long bytes = 0;
+
+    IoThrottle(int mbPerSecond) {
+        this.bytesPerSecond = mbPerSecond * 1024L * 1024L;
+    }
+
+    void spent(long n) throws InterruptedException {
+        if (bytesPerSecond <= 0) return;
+        bytes += n;
+        long dueNanos = bytes * 1_000_000_000L / bytesPerSecond;
+        long aheadNanos = dueNanos - (System.nanoTime() - start);
+        if (aheadNanos > 0) TimeUnit.NANOSECONDS.sleep(aheadNanos);
+    }
+}
@@ -0,0 +1,219 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Moves worlds WorldBopper decided to keep out of tmpfs into
+// ~/.local/share/lingle/archive/<instance>/ so RAM only holds worlds still being played. The copy
+// streams on one idle I/O priority thread under a MB/s budget, fsyncs in batches, and is read back
+// and compared before the tmpfs copy is discarded.
+public final class KeptWorldEvacuator {
+
+    private static final int BUFFER = 1024 * 1024;
+    // fsync once this much was written since the last sync
+    private static final long SYNC_BATCH_BYTES = 64L * 1024 * 1024;
+
+    private static final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService worker = createWorker();
+
+    private KeptWorldEvacuator() {}
+
+    private static ExecutorService createWorker() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(() -> {
+                IoPriority.idleForCurrentThread();
+                r.run();
+            }, "lingle-evacuator");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static Path archiveDir() {
+        return Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/archive");
+    }
+
+    // Worlds outside ~/Lingle already live on disk and are left where they are
+    public static void submit(Path world) {
+        if (!LingleConfig.current().evacuation().enabled()) return;
+        Path slot;
+        try {
+            Path real = world.toRealPath();
+            Path lingle = Path.of(System.getProperty("user.home")).resolve("Lingle").toRealPath();
+            if (!lingle.equals(real.getParent().getParent())) return;
+            world = real;
+            slot = real.getParent();
+        } catch (IOException e) {
+            return;
+        }
+        if (!queued.add(world)) return;
+        Path source = world;
+        Path target = archiveDir().resolve(instanceName(slot));
+        worker.execute(() -> {
+            try {
+                evacuate(source, target);
+            } catch (IOException e) {
+                LingleLogger.logError("Evacuating " + source + " failed, keeping it in tmpfs", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queued.remove(source);
+            }
+        });
+    }
+
+    // Slot N belongs to the Nth linked instance
+    private static String instanceName(Path slot) {
+        String n = slot.getFileName().toString();
+        try {
+            int i = Integer.parseInt(n) - 1;
+            List<String> linked = LingleConfig.current().linkedInstances();
+            if (i >= 0 && i < linked.size()) return linked.get(i);
+        } catch (NumberFormatException ignored) {}
+        return "slot-" + n;
+    }
+
+    private static void evacuate(Path world, Path archive) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Files.createDirectories(archive);
+        Path tmp = archive.resolve(".evacuating-" + world.getFileName() + "-" + System.nanoTime());
+        Map<Path, Long> checksums = new LinkedHashMap<>();
+        Map<Path, BasicFileAttributes> before = new LinkedHashMap<>();
+        IoThrottle throttle = new IoThrottle(LingleConfig.current().evacuation().budgetMBps());
+
+        try {
+            long bytes = copyTree(world, tmp, checksums, before, throttle);
+
+            // A world that changed while it was copied is tried again on a later pass
+            for (Map.Entry<Path, BasicFileAttributes> e : before.entrySet()) {
+                BasicFileAttributes now = Files.readAttributes(world.resolve(e.getKey().toString()), BasicFileAttributes.class);
+                if (now.size() != e.getValue().size() || !now.lastModifiedTime().equals(e.getValue().lastModifiedTime())) {
+                    throw new IOException("World changed during the copy");
+                }
+            }
+            for (Map.Entry<Path, Long> e : checksums.entrySet()) {
+                if (checksum(tmp.resolve(e.getKey().toString())) != e.getValue()) {
+                    throw new IOException("Verification failed for " + e.getKey());
+                }
+            }
+
+            Path target = archive.resolve(world.getFileName().toString());
+            if (Files.exists(target)) target = archive.resolve(world.getFileName() + "-" + System.currentTimeMillis());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDir(archive);
+
+            WorldReclaimer.discard(world);
+            WorldClassifier.forget(world);
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LingleLogger.logInfo("Evacuated " + world.getFileName() + " (" + bytes / (1024 * 1024) + " MB) to " + target + " in " + ms + " ms");
+        } catch (IOException | InterruptedException e) {
+            WorldReclaimer.deleteTree(tmp);
+            throw e;
+        }
+    }
+
+    private static long copyTree(Path src, Path dst, Map<Path, Long> checksums, Map<Path, BasicFileAttributes> before,
+                                 IoThrottle throttle) throws IOException, InterruptedException {
+        List<Path> unsynced = new ArrayList<>();
+        long[] total = {0, 0};
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+        InterruptedException[] interrupted = {null};
+
+        Files.walkFileTree(src, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dst.resolve(src.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path rel = src.relativize(file);
+                if (rel.toString().equals("session.lock") || !attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+                Path out = dst.resolve(rel.toString());
+                CRC32C crc = new CRC32C();
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                     FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    while (in.read(buf) > 0) {
+                        buf.flip();
+                        int n = buf.remaining();
+                        crc.update(buf.duplicate());
+                        while (buf.hasRemaining()) ch.write(buf);
+                        buf.clear();
+                        total[0] += n;
+                        total[1] += n;
+                        throttle.spent(n);
+                    }
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                    return FileVisitResult.TERMINATE;
+                }
+                Files.setLastModifiedTime(out, attrs.lastModifiedTime());
+                checksums.put(rel, crc.getValue());
+                before.put(rel, attrs);
+                unsynced.add(out);
+                if (total[1] >= SYNC_BATCH_BYTES) {
+                    syncAll(unsynced);
+                    total[1] = 0;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (interrupted[0] != null) throw interrupted[0];
+        syncAll(unsynced);
+
+        // Directory entries have to reach the disk as well before the tmpfs copy goes away
+        Files.walkFileTree(dst, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                syncDir(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return total[0];
+    }
+
+    private static void syncAll(List<Path> files) throws IOException {
+        for (Path f : files) {
+            try (FileChannel ch = FileChannel.open(f, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+        }
+        files.clear();
+    }
+
+    private static void syncDir(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {}
+    }
+
+    private static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (in.read(buf) > 0) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,244 @@
+package flammable.bunny.core;
+
+import flammable.bunny.core.WorldBopperConfig.KeepCondition;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable view of config.json. It is parsed in a single pass, older files are migrated up to
+// VERSION first, and the published snapshot is what background threads read; LingleState keeps
+// the mutable fields the UI edits and publishes a new snapshot on every save.
+public record LingleConfig(
+        int version,
+        String gpu,
+        String distro,
+        Tmpfs tmpfs,
+        int instanceCount,
+        List<String> linkedInstances,
+        PracticeMaps practiceMaps,
+        Adw adw,
+        Snapshot snapshot,
+        Evacuation evacuation,
+        Submission submission,
+        WorldBopper worldBopper,
+        int cleanupThreads,
+        boolean configEditingEnabled,
+        List<Remap> remaps,
+        Map<String, String> keybinds) {
+
+    public static final int VERSION = 1;
+
+    // autoSizeMb is the last size TmpfsSizer recommended, used while sizeMb is 0 (auto)
+    public record Tmpfs(boolean enabled, int sizeMb, int autoSizeMb, String backend, String zramAlgorithm, String hugePages,
+                        int highWatermark, int lowWatermark) {}
+
+    public record PracticeMaps(boolean enabled, List<String> selected, String mode) {}
+
+    public record Adw(boolean enabled, int intervalSeconds) {}
+
+    public record Snapshot(boolean enabled, int worldsPerInstance, int budgetMBps, int intervalSeconds) {}
+
+    public record Evacuation(boolean enabled, int budgetMBps) {}
+
+    public record Submission(boolean cacheEnabled, int cacheWorlds, int deflateLevel, int threads) {}
+
+    public record WorldBopper(boolean enabled, List<String> instances, int intervalSeconds, int tickBudgetMs,
+                              List<BopRule> rules) {}
+
+    public record BopRule(String prefix, KeepCondition condition, int minSizeMB, int minChunks) {}
+
+    public record Remap(String from, String to, boolean permanent) {}
+
+    private static volatile LingleConfig current = parse("{}");
+
+    // Lock-free read for threads that must not see a half-applied change
+    public static LingleConfig current() {
+        return current;
+    }
+
+    static void publish(LingleConfig config) {
+        current = config;
+    }
+
+    public static LingleConfig parse(String json) {
+        JSONObject o = migrate(json == null || json.isBlank() ? new JSONObject() : new JSONObject(json));
+
+        List<BopRule> rules = new ArrayList<>();
+        JSONArray bw = o.optJSONArray("boppableWorlds");
+        if (bw != null) {
+            for (int i = 0; i < bw.length(); i++) {
+                JSONObject r = bw.optJSONObject(i);
+                if (r == null) continue;
+                // A misspelled condition must not turn a rule meant to keep worlds into one deleting them;
+                // only a rule without any condition means ALWAYS_DELETE
+                KeepCondition condition = r.has("condition") ? r.optEnum(KeepCondition.class, "condition")
+                        : KeepCondition.ALWAYS_DELETE;
+                if (condition == null) {
+                    LingleLogger.logError("Ignoring boppable world rule \"" + r.optString("prefix", "")
+                            + "\" with unknown condition \"" + r.opt("condition") + "\"");
+                    continue;
+                }
+                rules.add(new BopRule(r.optString("prefix", ""), condition,
+                        r.optInt("minSizeMB", 10), r.optInt("minChunks", 100)));
+            }
+        }
+
+        List<Remap> remaps = new ArrayList<>();
+        JSONArray rm = o.optJSONArray("remaps");
+        if (rm != null) {
+            for (int i = 0; i < rm.length(); i++) {
+                JSONObject r = rm.optJSONObject(i);
+                if (r == null) continue;
+                String from = r.optString("from", "");
+                String to = r.optString("to", "");
+                if (!from.isEmpty() && !to.isEmpty()) remaps.add(new Remap(from, to, r.optBoolean("permanent", false)));
+            }
+        }
+
+        // Stored as "Name = value" lines so the file stays readable for people editing it by hand
+        Map<String, String> keybinds = new LinkedHashMap<>();
+        JSONArray kb = o.optJSONArray("Set_Keybinds");
+        if (kb != null) {
+            for (int i = 0; i < kb.length(); i++) {
+                String line = kb.optString(i, "");
+                int eq = line.indexOf('=');
+                if (eq <= 0) continue;
+                String name = line.substring(0, eq).trim();
+                String val = line.substring(eq + 1).trim();
+                if (name.matches("[A-Za-z0-9_]+") && !val.isEmpty()) keybinds.put(name, val);
+            }
+        }
+
+        return new LingleConfig(
+                o.optInt("configVersion", VERSION),
+                o.optString("gpu", null),
+                o.optString("distro", null),
+                new Tmpfs("enabled".equals(o.optString("tmpfs")),
+                        Math.max(0, o.optInt("tmpfsSizeMb", 0)),
+                        Math.max(0, o.optInt("tmpfsAutoSizeMb", 0)),
+                        o.optString("tmpfsBackend", "tmpfs"),
+                        o.optString("zramAlgorithm", "zstd"),
+                        o.optString("tmpfsHugePages", "never"),
+                        o.optInt("tmpfsHighWatermark", 90),
+                        o.optInt("tmpfsLowWatermark", 75)),
+                Math.max(0, o.optInt("instanceCount", 0)),
+                strings(o.optJSONArray("linkedInstances")),
+                new PracticeMaps(o.optBoolean("practiceMaps", false),
+                        strings(o.optJSONArray("selectedMaps")),
+                        o.optString("practiceMapMode", "symlink")),
+                new Adw(o.optBoolean("adw", false), Math.max(1, o.optInt("adwInterval", 300))),
+                new Snapshot(o.optBoolean("snapshotEnabled", false),
+                        Math.max(0, o.optInt("snapshotWorldsPerInstance", 3)),
+                        Math.max(0, o.optInt("snapshotBudgetMBps", 20)),
+                        Math.max(10, o.optInt("snapshotInterval", 300))),
+                new Evacuation(o.optBoolean("evacuateKeptWorlds", false),
+                        Math.max(0, o.optInt("evacuationBudgetMBps", 50))),
+                new Submission(o.optBoolean("submissionCacheEnabled", false),
+                        Math.max(1, o.optInt("submissionCacheWorlds", 8)),
+                        Math.max(1, Math.min(9, o.optInt("submissionDeflateLevel", 6))),
+                        Math.max(0, o.optInt("submissionThreads", 0))),
+                new WorldBopper(o.optBoolean("worldBopperEnabled", false),
+                        strings(o.optJSONArray("WorldBopperInstances")),
+                        Math.max(1, o.optInt("worldBopperInterval", 60)),
+                        Math.max(10, o.optInt("worldBopperTickBudgetMs", 250)),
+                        List.copyOf(rules)),
+                Math.max(0, o.optInt("cleanupThreads", 0)),
+                o.optBoolean("configEditingEnabled", false),
+                List.copyOf(remaps),
+                Collections.unmodifiableMap(keybinds));
+    }
+
+    // Files without a configVersion were written before it existed
+    private static JSONObject migrate(JSONObject o) {
+        int version = o.optInt("configVersion", 0);
+        if (version < 1) {
+            // Hand-edited files sometimes carry the tmpfs state as a boolean
+            Object tmpfs = o.opt("tmpfs");
+            if (tmpfs instanceof Boolean b) o.put("tmpfs", b ? "enabled" : "disabled");
+            // The regex loader replaced keybinds that were not an array with the defaults
+            if (o.has("Set_Keybinds") && !(o.get("Set_Keybinds") instanceof JSONArray)) o.remove("Set_Keybinds");
+        }
+        o.put("configVersion", VERSION);
+        return o;
+    }
+
+    private static List<String> strings(JSONArray arr) {
+        List<String> out = new ArrayList<>();
+        if (arr == null) return List.of();
+        for (int i = 0; i < arr.length(); i++) {
+            String s = arr.optString(i, null);
+            if (s != null) out.add(s);
+        }
+        return List.copyOf(out);
+    }
+
+    public String toJson() {
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        ordered.put("configVersion", version);
+        if (gpu != null) ordered.put("gpu", gpu);
+        if (distro != null) ordered.put("distro", distro);
+        ordered.put("tmpfs", tmpfs.enabled ? "enabled" : "disabled");
+        ordered.put("instanceCount", instanceCount);
+        ordered.put("linkedInstances", new JSONArray(linkedInstances));
+        ordered.put("practiceMaps", practiceMaps.enabled);
+        ordered.put("selectedMaps", new JSONArray(practiceMaps.selected));
+        ordered.put("practiceMapMode", practiceMaps.mode);
+        ordered.put("adw", adw.enabled);
+        ordered.put("adwInterval", adw.intervalSeconds);
+        ordered.put("tmpfsHighWatermark", tmpfs.highWatermark);
+        ordered.put("tmpfsLowWatermark", tmpfs.lowWatermark);
+        ordered.put("tmpfsSizeMb", tmpfs.sizeMb);
+        ordered.put("tmpfsAutoSizeMb", tmpfs.autoSizeMb);
+        ordered.put("tmpfsBackend", tmpfs.backend);
+        ordered.put("zramAlgorithm", tmpfs.zramAlgorithm);
+        ordered.put("tmpfsHugePages", tmpfs.hugePages);
+        ordered.put("snapshotEnabled", snapshot.enabled);
+        ordered.put("snapshotWorldsPerInstance", snapshot.worldsPerInstance);
+        ordered.put("snapshotBudgetMBps", snapshot.budgetMBps);
+        ordered.put("snapshotInterval", snapshot.intervalSeconds);
+        ordered.put("evacuateKeptWorlds", evacuation.enabled);
+        ordered.put("evacuationBudgetMBps", evacuation.budgetMBps);
+        ordered.put("submissionCacheEnabled", submission.cacheEnabled);
+        ordered.put("submissionCacheWorlds", submission.cacheWorlds);
+        ordered.put("submissionDeflateLevel", submission.deflateLevel);
+        ordered.put("submissionThreads", submission.threads);
+        ordered.put("WorldBopperInstances", new JSONArray(worldBopper.instances));
+        ordered.put("worldBopperEnabled", worldBopper.enabled);
+        ordered.put("worldBopperInterval", worldBopper.intervalSeconds);
+        ordered.put("worldBopperTickBudgetMs", worldBopper.tickBudgetMs);
+        ordered.put("cleanupThreads", cleanupThreads);
+        ordered.put("configEditingEnabled", configEditingEnabled);
+
+        JSONArray bwArray = new JSONArray();
+        for (BopRule rule : worldBopper.rules) {
+            JSONObject bw = new JSONObject();
+            bw.put("prefix", rule.prefix);
+            bw.put("condition", rule.condition.name());
+            bw.put("minSizeMB", rule.minSizeMB);
+            bw.put("minChunks", rule.minChunks);
+            bwArray.put(bw);
+        }
+        ordered.put("boppableWorlds", bwArray);
+
+        JSONArray remapsArray = new JSONArray();
+        for (Remap remap : remaps) {
+            JSONObject rm = new JSONObject();
+            rm.put("from", remap.from);
+            rm.put("to", remap.to);
+            rm.put("permanent", remap.permanent);
+            remapsArray.put(rm);
+        }
+        ordered.put("remaps", remapsArray);
+
+        JSONArray keyArr = new JSONArray();
+        keybinds.forEach((name, val) -> keyArr.put(name + " = " + val));
+        ordered.put("Set_Keybinds", keyArr);
+
+        return new JSONObject(ordered).toString(2);
+    }
+}
@@ -1,19 +1,14 @@
 package flammable.bunny.core;
 
-import org.json.JSONObject;
 import flammable.bunny.core.WorldBopperConfig.KeepWorldInfo;
 import flammable.bunny.core.WorldBopperConfig.KeepCondition;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class LingleState {
     public static boolean enabled = false;
@@ -21,11 +16,33 @@ public class LingleState {
     public static int instanceCount = 0;
     public static List<String> linkedInstances = new ArrayList<>();
     public static List<String> selectedPracticeMaps = new ArrayList<>();
+    public static String practiceMapMode = "symlink";
     public static boolean adwEnabled = false;
     public static int adwIntervalSeconds = 300;
+    public static int tmpfsHighWatermark = 90;
+    public static int tmpfsLowWatermark = 75;
+    public static int tmpfsSizeMb = 0;
+    public static int tmpfsAutoSizeMb = 0;
+    public static String tmpfsBackend = "tmpfs";
+    public static String zramAlgorithm = "zstd";
+    public static String tmpfsHugePages = "never";
+    public static boolean snapshotEnabled = false;
+    public static int snapshotWorldsPerInstance = 3;
+    public static int snapshotBudgetMBps = 20;
+    public static int snapshotIntervalSeconds = 300;
+    public static boolean evacuateKeptWorlds = false;
+    public static int evacuationBudgetMBps = 50;
+    public static boolean submissionCacheEnabled = false;
+    public static int submissionCacheWorlds = 8;
+    public static int submissionDeflateLevel = 6;
+    public static int submissionThreads = 0;
     public static List<String> WorldbopperSelectedInstances = new ArrayList<>();
     public static boolean worldBopperEnabled = false;
+    public static int worldBopperIntervalSeconds = 60;
+    public static int worldBopperTickBudgetMs = 250;
+    public static int cleanupThreads = 0;
     public static List<KeepWorldInfo> boppableWorlds = new ArrayList<>();
+    private static volatile PrefixTrie<KeepWorldInfo> boppableTrie = PrefixTrie.compile(List.of(), info -> info.prefix);
     public static List<Remaps> remaps = new ArrayList<>();
     public static boolean configEditingEnabled = false;
 
@@ -49,6 +66,12 @@ public class LingleState {
             boppableWorlds.add(new KeepWorldInfo("Benchmark Reset #", KeepCondition.ALWAYS_DELETE));
             boppableWorlds.add(new KeepWorldInfo("New World", KeepCondition.ALWAYS_DELETE));
         }
+        boppableTrie = PrefixTrie.compile(new ArrayList<>(boppableWorlds), info -> info.prefix);
+    }
+
+    // Rule with the longest prefix of the world name, compiled whenever the rules are loaded or saved
+    public static KeepWorldInfo matchBoppableWorld(String worldName) {
+        return boppableTrie.longestMatch(worldName);
     }
 
         public static String getSetKeybind(String name) {
@@ -67,186 +90,114 @@ public class LingleState {
             saveState();
         }
 
-    private static Path getConfigFilePath() {
-        String userHome = System.getProperty("user.home");
-        return Path.of(userHome, ".local", "share", "lingle", "config.json");
+    public static void loadState() throws IOException {
+        String s = ConfigStore.read();
+        LingleConfig cfg;
+        try {
+            cfg = LingleConfig.parse(s);
+        } catch (org.json.JSONException e) {
+            throw new IOException("config.json is not valid JSON: " + e.getMessage(), e);
+        }
+        apply(cfg);
+        LingleConfig.publish(cfg);
+
+        // Writes back missing files, migrated versions and defaults filled in; unchanged text is skipped
+        saveState();
     }
 
-    public static void loadState() throws IOException {
-        Path cfg = getConfigFilePath();
-        ensureDefaultKeybinds();
-        boolean needSave = false;
-        String s = null;
-        if (Files.exists(cfg)) {
-            s = Files.readString(cfg);
-            enabled = s.contains("\"tmpfs\"") && s.contains("\"enabled\"");
-            practiceMaps = s.contains("\"practiceMaps\": true");
-            Matcher m = Pattern.compile("\"instanceCount\"\\s*:\\s*(\\d+)").matcher(s);
-            if (m.find()) instanceCount = Integer.parseInt(m.group(1));
-            linkedInstances.clear();
-            Matcher linkedArr = Pattern.compile("\"linkedInstances\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL).matcher(s);
-            if (linkedArr.find()) {
-                String inside = linkedArr.group(1);
-                Matcher item = Pattern.compile("\"(.*?)\"").matcher(inside);
-                while (item.find()) linkedInstances.add(item.group(1));
-            }
-            selectedPracticeMaps.clear();
-            Matcher arr = Pattern.compile("\"selectedMaps\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL).matcher(s);
-            if (arr.find()) {
-                String inside = arr.group(1);
-                Matcher item = Pattern.compile("\"(.*?)\"").matcher(inside);
-                while (item.find()) selectedPracticeMaps.add(item.group(1));
-            }
-            adwEnabled = s.contains("\"adw\": true");
-            Matcher im = Pattern.compile("\"adwInterval\"\\s*:\\s*(\\d+)").matcher(s);
-            if (im.find()) adwIntervalSeconds = Math.max(1, Integer.parseInt(im.group(1)));
-            WorldbopperSelectedInstances.clear();
-            Matcher adwArr = Pattern.compile("\"WorldBopperInstances\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL).matcher(s);
-            if (adwArr.find()) {
-                String inside = adwArr.group(1);
-                Matcher item = Pattern.compile("\"(.*?)\"").matcher(inside);
-                while (item.find()) WorldbopperSelectedInstances.add(item.group(1));
-            }
-            worldBopperEnabled = s.contains("\"worldBopperEnabled\": true");
-            configEditingEnabled = s.contains("\"configEditingEnabled\": true");
-
-            // Load boppable worlds
-            boppableWorlds.clear();
-            try {
-                JSONObject obj = new JSONObject(s);
-                if (obj.has("boppableWorlds")) {
-                    org.json.JSONArray bwArray = obj.getJSONArray("boppableWorlds");
-                    for (int i = 0; i < bwArray.length(); i++) {
-                        JSONObject bw = bwArray.getJSONObject(i);
-                        String prefix = bw.optString("prefix", "");
-                        String conditionStr = bw.optString("condition", "ALWAYS_DELETE");
-                        int sizeMB = bw.optInt("minSizeMB", 10);
-
-                        KeepCondition condition = KeepCondition.valueOf(conditionStr);
-                        boppableWorlds.add(new KeepWorldInfo(prefix, condition, sizeMB));
-                    }
-                }
-            } catch (Exception ignored) {}
-
-            ensureDefaultBoppableWorlds();
-
-            // Load remaps
-            remaps.clear();
-            try {
-                JSONObject obj = new JSONObject(s);
-                if (obj.has("remaps")) {
-                    org.json.JSONArray remapsArray = obj.getJSONArray("remaps");
-                    for (int i = 0; i < remapsArray.length(); i++) {
-                        JSONObject remap = remapsArray.getJSONObject(i);
-                        String from = remap.optString("from", "");
-                        String to = remap.optString("to", "");
-                        boolean perm = remap.optBoolean("permanent", false);
-                        if (!from.isEmpty() && !to.isEmpty()) {
-                            remaps.add(new Remaps(from, to, perm));
-                        }
-                    }
-                }
-            } catch (Exception ignored) {}
-
-            try {
-                JSONObject obj = new JSONObject(s);
-                if (obj.has("Set_Keybinds") && obj.get("Set_Keybinds") instanceof org.json.JSONArray) {
-                    org.json.JSONArray arr2 = obj.getJSONArray("Set_Keybinds");
-                    for (int i = 0; i < arr2.length(); i++) {
-                        String line = String.valueOf(arr2.get(i));
-                        if (line == null) continue;
-                        Matcher kv = Pattern.compile("^\\s*([A-Za-z0-9_]+)\\s*=\\s*(.+?)\\s*$").matcher(line);
-                        if (kv.find()) {
-                            String name = kv.group(1);
-                            String val = kv.group(2);
-                            setKeybinds.put(name, (val == null || val.isBlank()) ? NOT_SET : val);
-                        }
-                    }
-                    ensureDefaultKeybinds();
-                } else {
-                    needSave = true;
-                }
-            } catch (Exception ignored) {
-                needSave = true;
-            }
-        } else {
-            needSave = true;
+    // config.json was edited outside Lingle; runs on the EDT like every other change to these fields
+    static void applyExternal(LingleConfig cfg) {
+        apply(cfg);
+        LingleConfig.publish(cfg);
+    }
+
+    private static void apply(LingleConfig cfg) {
+        enabled = cfg.tmpfs().enabled();
+        tmpfsSizeMb = cfg.tmpfs().sizeMb();
+        tmpfsAutoSizeMb = cfg.tmpfs().autoSizeMb();
+        tmpfsBackend = cfg.tmpfs().backend();
+        zramAlgorithm = cfg.tmpfs().zramAlgorithm();
+        tmpfsHugePages = cfg.tmpfs().hugePages();
+        tmpfsHighWatermark = cfg.tmpfs().highWatermark();
+        tmpfsLowWatermark = cfg.tmpfs().lowWatermark();
+        instanceCount = cfg.instanceCount();
+        linkedInstances = new ArrayList<>(cfg.linkedInstances());
+        practiceMaps = cfg.practiceMaps().enabled();
+        selectedPracticeMaps = new ArrayList<>(cfg.practiceMaps().selected());
+        practiceMapMode = cfg.practiceMaps().mode();
+        adwEnabled = cfg.adw().enabled();
+        adwIntervalSeconds = cfg.adw().intervalSeconds();
+        snapshotEnabled = cfg.snapshot().enabled();
+        snapshotWorldsPerInstance = cfg.snapshot().worldsPerInstance();
+        snapshotBudgetMBps = cfg.snapshot().budgetMBps();
+        snapshotIntervalSeconds = cfg.snapshot().intervalSeconds();
+        evacuateKeptWorlds = cfg.evacuation().enabled();
+        evacuationBudgetMBps = cfg.evacuation().budgetMBps();
+        submissionCacheEnabled = cfg.submission().cacheEnabled();
+        submissionCacheWorlds = cfg.submission().cacheWorlds();
+        submissionDeflateLevel = cfg.submission().deflateLevel();
+        submissionThreads = cfg.submission().threads();
+        worldBopperEnabled = cfg.worldBopper().enabled();
+        WorldbopperSelectedInstances = new ArrayList<>(cfg.worldBopper().instances());
+        worldBopperIntervalSeconds = cfg.worldBopper().intervalSeconds();
+        worldBopperTickBudgetMs = cfg.worldBopper().tickBudgetMs();
+        cleanupThreads = cfg.cleanupThreads();
+        configEditingEnabled = cfg.configEditingEnabled();
+
+        boppableWorlds = new ArrayList<>();
+        for (LingleConfig.BopRule r : cfg.worldBopper().rules()) {
+            boppableWorlds.add(new KeepWorldInfo(r.prefix(), r.condition(), r.minSizeMB(), r.minChunks()));
         }
+        ensureDefaultBoppableWorlds();
+
+        remaps = new ArrayList<>();
+        for (LingleConfig.Remap r : cfg.remaps()) remaps.add(new Remaps(r.from(), r.to(), r.permanent()));
 
-        if (needSave) saveState();
+        setKeybinds.clear();
+        setKeybinds.putAll(cfg.keybinds());
+        ensureDefaultKeybinds();
     }
 
-    public static void saveState() {
-        try {
-            Path cfg = getConfigFilePath();
-            Files.createDirectories(cfg.getParent());
-
-            String existing = Files.exists(cfg) ? Files.readString(cfg) : null;
-            String gpu = null;
-            String distro = null;
-            if (existing != null && !existing.isBlank()) {
-                try {
-                    JSONObject prev = new JSONObject(existing);
-                    gpu = prev.optString("gpu", null);
-                    distro = prev.optString("distro", null);
-                } catch (Exception ignored) {}
-            }
-            if (gpu == null || gpu.isBlank()) gpu = DistroDetector.getGPU();
-            if (distro == null || distro.isBlank()) distro = DistroDetector.getDistro();
-
-            Map<String, Object> ordered = new LinkedHashMap<>();
-            if (gpu != null) ordered.put("gpu", gpu);
-            if (distro != null) ordered.put("distro", distro);
-            ordered.put("tmpfs", enabled ? "enabled" : "disabled");
-            ordered.put("instanceCount", instanceCount);
-            org.json.JSONArray linkedArr = new org.json.JSONArray();
-            for (String inst : linkedInstances) linkedArr.put(inst);
-            ordered.put("linkedInstances", linkedArr);
-            ordered.put("practiceMaps", practiceMaps);
-            org.json.JSONArray arr = new org.json.JSONArray();
-            for (String s : selectedPracticeMaps) arr.put(s);
-            ordered.put("selectedMaps", arr);
-            ordered.put("adw", adwEnabled);
-            ordered.put("adwInterval", Math.max(1, adwIntervalSeconds));
-            org.json.JSONArray wbInstArr = new org.json.JSONArray();
-            for (String inst : WorldbopperSelectedInstances) wbInstArr.put(inst);
-            ordered.put("WorldBopperInstances", wbInstArr);
-            ordered.put("worldBopperEnabled", worldBopperEnabled);
-            ordered.put("configEditingEnabled", configEditingEnabled);
-
-            // Save boppable worlds
-            ensureDefaultBoppableWorlds();
-            org.json.JSONArray bwArray = new org.json.JSONArray();
-            for (KeepWorldInfo info : boppableWorlds) {
-                JSONObject bw = new JSONObject();
-                bw.put("prefix", info.prefix);
-                bw.put("condition", info.condition.name());
-                bw.put("minSizeMB", info.minSizeMB);
-                bwArray.put(bw);
-            }
-            ordered.put("boppableWorlds", bwArray);
-
-            // Save remaps
-            org.json.JSONArray remapsArray = new org.json.JSONArray();
-            for (Remaps remap : remaps) {
-                JSONObject rm = new JSONObject();
-                rm.put("from", remap.fromKey);
-                rm.put("to", remap.toKey);
-                rm.put("permanent", remap.isPermanent);
-                remapsArray.put(rm);
-            }
-            ordered.put("remaps", remapsArray);
+    // Freezes the fields as they are now; the UI edits the fields and calls saveState when done
+    private static LingleConfig snapshot() {
+        ensureDefaultBoppableWorlds();
+        List<LingleConfig.BopRule> rules = new ArrayList<>();
+        for (KeepWorldInfo info : boppableWorlds) {
+            rules.add(new LingleConfig.BopRule(info.prefix, info.condition, info.minSizeMB, info.minChunks));
+        }
+        List<LingleConfig.Remap> remapList = new ArrayList<>();
+        for (Remaps remap : remaps) remapList.add(new LingleConfig.Remap(remap.fromKey, remap.toKey, remap.isPermanent));
+        ensureDefaultKeybinds();
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String name : KEYBIND_NAMES) keys.put(name, getSetKeybind(name));
+
+        return new LingleConfig(
+                LingleConfig.VERSION,
+                // Both are cached after the first lookup, so saving never rereads the file or runs lspci
+                DistroDetector.getGPU(),
+                DistroDetector.getDistro(),
+                new LingleConfig.Tmpfs(enabled, Math.max(0, tmpfsSizeMb), Math.max(0, tmpfsAutoSizeMb), tmpfsBackend, zramAlgorithm, tmpfsHugePages,
+                        tmpfsHighWatermark, tmpfsLowWatermark),
+                instanceCount,
+                List.copyOf(linkedInstances),
+                new LingleConfig.PracticeMaps(practiceMaps, List.copyOf(selectedPracticeMaps), practiceMapMode),
+                new LingleConfig.Adw(adwEnabled, Math.max(1, adwIntervalSeconds)),
+                new LingleConfig.Snapshot(snapshotEnabled, Math.max(0, snapshotWorldsPerInstance),
+                        Math.max(0, snapshotBudgetMBps), Math.max(10, snapshotIntervalSeconds)),
+                new LingleConfig.Evacuation(evacuateKeptWorlds, Math.max(0, evacuationBudgetMBps)),
+                new LingleConfig.Submission(submissionCacheEnabled, Math.max(1, submissionCacheWorlds),
+                        Math.max(1, Math.min(9, submissionDeflateLevel)), Math.max(0, submissionThreads)),
+                new LingleConfig.WorldBopper(worldBopperEnabled, List.copyOf(WorldbopperSelectedInstances),
+                        Math.max(1, worldBopperIntervalSeconds), Math.max(10, worldBopperTickBudgetMs), List.copyOf(rules)),
+                Math.max(0, cleanupThreads),
+                configEditingEnabled,
+                List.copyOf(remapList),
+                Collections.unmodifiableMap(keys));
+    }
 
-            ensureDefaultKeybinds();
-            org.json.JSONArray keyArr = new org.json.JSONArray();
-            for (String name : KEYBIND_NAMES) {
-                String val = getSetKeybind(name);
-                keyArr.put(name + " = " + val);
-            }
-            ordered.put("Set_Keybinds", keyArr);
-
-            JSONObject out = new JSONObject(ordered);
-            Files.writeString(cfg, out.toString(2), StandardCharsets.UTF_8);
-        } catch (IOException ignored) {}
+    public static void saveState() {
+        LingleConfig cfg = snapshot();
+        LingleConfig.publish(cfg);
+        ConfigStore.save(cfg.toJson());
     }
 }
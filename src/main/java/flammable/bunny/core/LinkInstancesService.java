@@ -3,84 +3,297 @@ package flammable.bunny.core;
 import flammable.bunny.ui.UIUtils;
 import javax.swing.*;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 public class LinkInstancesService {
 
+    // One instance's part of a symlink batch, kept so the whole batch can be undone
+    private static final class LinkStep {
+        final Path savesPath;
+        final Path slotDir;
+        Path aside;
+        boolean createdSlot;
+        boolean linked;
+
+        LinkStep(Path savesPath, Path slotDir) {
+            this.savesPath = savesPath;
+            this.slotDir = slotDir;
+        }
+    }
+
+    // Links all instances or none. Old saves are renamed aside, every link is created and checked,
+    // and only then are the old saves handed to the reclaimer; any failure puts everything back.
     public static void symlinkInstances(List<String> instanceNames) throws IOException {
         Path home = Path.of(System.getProperty("user.home"));
-        int idx = 1;
-        for (String instance : instanceNames) {
-            Path lingleDir = home.resolve("Lingle").resolve(String.valueOf(idx++));
-            Files.createDirectories(lingleDir);
-
-            Path savesPath = home.resolve(".local/share/PrismLauncher/instances")
-                    .resolve(instance).resolve("minecraft/saves");
-
-            if (Files.exists(savesPath)) {
-                try (var stream = Files.walk(savesPath)) {
-                    stream.sorted(Comparator.reverseOrder()).forEach(p -> {
-                        try { Files.deleteIfExists(p); } catch (IOException ignored) {}
-                    });
-                }
-            }
-            try { Files.createSymbolicLink(savesPath, lingleDir); }
-            catch (FileAlreadyExistsException ignored) {}
+        Path instancesDir = home.resolve(".local/share/PrismLauncher/instances");
+        List<LinkStep> steps = new ArrayList<>();
+        for (int i = 0; i < instanceNames.size(); i++) {
+            steps.add(new LinkStep(instancesDir.resolve(instanceNames.get(i)).resolve("minecraft/saves"),
+                    home.resolve("Lingle").resolve(String.valueOf(i + 1))));
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (LinkStep step : steps) tasks.add(() -> { linkStep(step); return null; });
+        try {
+            CleanupPool.runAll(tasks);
+        } catch (IOException e) {
+            LingleLogger.logError("Symlinking failed, rolling back " + steps.size() + " instance(s)", e);
+            for (LinkStep step : steps) rollback(step);
+            throw e;
+        }
+
+        for (LinkStep step : steps) {
+            if (step.aside != null) WorldReclaimer.reclaim(step.aside);
         }
         LingleState.instanceCount = instanceNames.size();
         LingleState.linkedInstances = new ArrayList<>(instanceNames);
         LingleState.saveState();
     }
 
+    private static void linkStep(LinkStep step) throws IOException {
+        if (!Files.isDirectory(step.slotDir)) {
+            Files.createDirectories(step.slotDir);
+            step.createdSlot = true;
+        }
+        Path savesPath = step.savesPath;
+        if (Files.isSymbolicLink(savesPath)
+                && savesPath.getParent().resolve(Files.readSymbolicLink(savesPath)).normalize().equals(step.slotDir)) {
+            return;
+        }
+        if (Files.exists(savesPath, LinkOption.NOFOLLOW_LINKS)) {
+            // Into the instance's trash, so a crash before the reclaimer finishes is cleaned up on the next launch
+            Path trash = WorldReclaimer.localTrashDir(savesPath);
+            Files.createDirectories(trash);
+            Path aside = trash.resolve("saves-" + System.nanoTime());
+            Files.move(savesPath, aside, StandardCopyOption.ATOMIC_MOVE);
+            step.aside = aside;
+        } else {
+            Files.createDirectories(savesPath.getParent());
+        }
+        Files.createSymbolicLink(savesPath, step.slotDir);
+        step.linked = true;
+        if (!Files.isSymbolicLink(savesPath) || !Files.readSymbolicLink(savesPath).equals(step.slotDir)
+                || !Files.isDirectory(savesPath)) {
+            throw new IOException("Link check failed for " + savesPath);
+        }
+    }
+
+    private static void rollback(LinkStep step) {
+        try {
+            if (step.linked) Files.deleteIfExists(step.savesPath);
+            if (step.aside != null) Files.move(step.aside, step.savesPath, StandardCopyOption.ATOMIC_MOVE);
+            if (step.createdSlot) Files.deleteIfExists(step.slotDir);
+        } catch (IOException e) {
+            LingleLogger.logError("Rollback of " + step.savesPath + " incomplete", e);
+        }
+    }
+
     public static void linkPracticeMapsNow() throws IOException {
         if (LingleState.instanceCount <= 0 || LingleState.selectedPracticeMaps.isEmpty()) return;
+        linkMissingPracticeMaps();
+        writePracticeMapScript();
+        Files.writeString(practiceLinksFingerprintPath(), practiceLinksFingerprint(), StandardCharsets.UTF_8);
+    }
+
+    // Called on every launch. Nothing is touched when the fingerprint of the wanted links matches the
+    // last run and every link still points at its map; otherwise only missing links are created.
+    public static void preparePracticeMapLinks() throws IOException {
+        if (!LingleState.practiceMaps || !LingleState.enabled
+                || LingleState.instanceCount <= 0 || LingleState.selectedPracticeMaps.isEmpty()) {
+            refreshStartupScript();
+            return;
+        }
+
+        Path fingerprintFile = practiceLinksFingerprintPath();
+        String fingerprint = practiceLinksFingerprint();
+        String stored = Files.exists(fingerprintFile) ? Files.readString(fingerprintFile).trim() : "";
+        if (fingerprint.equals(stored) && practiceMapLinksValid()) return;
+
+        linkMissingPracticeMaps();
+        writePracticeMapScript();
+        Files.writeString(fingerprintFile, fingerprint, StandardCharsets.UTF_8);
+    }
+
+    // Practice maps are stored as Z_<name> so ADW leaves them alone; older ones may lack the prefix
+    static String practiceMapDirName(Path savesDir, String map) {
+        return Files.exists(savesDir.resolve("Z_" + map)) ? "Z_" + map : map;
+    }
+
+    private static List<String> practiceMapDirNames(Path savesDir) {
+        List<String> names = new ArrayList<>();
+        for (String map : LingleState.selectedPracticeMaps) names.add(practiceMapDirName(savesDir, map));
+        return names;
+    }
+
+    // Leaving materialize mode drops the private copies so symlinks can take their place
+    public static void setPracticeMapMode(String mode) throws IOException {
+        if (mode.equals(LingleState.practiceMapMode)) return;
+        if (PracticeMapMaterializer.enabled()) {
+            Path home = Path.of(System.getProperty("user.home"));
+            Path savesDir = practiceSavesDir();
+            List<String> names = practiceMapDirNames(savesDir);
+            for (int k = 1; k <= LingleState.instanceCount; k++) {
+                for (String name : names) {
+                    Path copy = home.resolve("Lingle").resolve(String.valueOf(k)).resolve(name);
+                    if (!Files.isSymbolicLink(copy) && Files.isDirectory(copy)) WorldReclaimer.discard(copy);
+                }
+            }
+            PracticeMapMaterializer.removeMasters(names);
+        }
+        LingleState.practiceMapMode = mode;
+        LingleState.saveState();
+    }
+
+    public static void resetPracticeMaps() throws IOException {
+        if (!PracticeMapMaterializer.enabled()) return;
+        Path savesDir = practiceSavesDir();
+        PracticeMapMaterializer.resetToPristine(savesDir, practiceMapDirNames(savesDir), LingleState.instanceCount);
+    }
+
+    private static Path practiceSavesDir() {
+        return Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/saves");
+    }
+
+    private static Path practiceLinksFingerprintPath() {
+        return Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/practice_links.fingerprint");
+    }
+
+    private static String practiceLinksFingerprint() throws IOException {
+        Path savesDir = practiceSavesDir();
+        StringBuilder sb = new StringBuilder();
+        sb.append(LingleState.instanceCount).append('\t').append(LingleState.practiceMapMode)
+                .append('\t').append(LingleState.snapshotEnabled).append('\n');
+        for (String map : LingleState.selectedPracticeMaps) {
+            Path target = savesDir.resolve(practiceMapDirName(savesDir, map));
+            Object inode;
+            try {
+                inode = Files.getAttribute(target, "unix:ino");
+            } catch (IOException | UnsupportedOperationException e) {
+                inode = "missing";
+            }
+            sb.append(target).append('\t').append(inode).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static boolean practiceMapLinksValid() {
+        Path home = Path.of(System.getProperty("user.home"));
+        Path savesDir = practiceSavesDir();
+        for (int k = 1; k <= LingleState.instanceCount; k++) {
+            Path dstDir = home.resolve("Lingle").resolve(String.valueOf(k));
+            for (String map : LingleState.selectedPracticeMaps) {
+                String name = practiceMapDirName(savesDir, map);
+                Path link = dstDir.resolve(name);
+                if (PracticeMapMaterializer.enabled()) {
+                    if (Files.isSymbolicLink(link) || !Files.isDirectory(link)) return false;
+                    continue;
+                }
+                try {
+                    if (!Files.isSymbolicLink(link) || !Files.readSymbolicLink(link).equals(savesDir.resolve(name))) return false;
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void linkMissingPracticeMaps() throws IOException {
         Path home = Path.of(System.getProperty("user.home"));
-        Path savesDir = home.resolve(".local/share/lingle/saves");
+        Path savesDir = practiceSavesDir();
+        if (PracticeMapMaterializer.enabled()) {
+            PracticeMapMaterializer.materialize(savesDir, practiceMapDirNames(savesDir), LingleState.instanceCount);
+            return;
+        }
         for (int k = 1; k <= LingleState.instanceCount; k++) {
             Path dstDir = home.resolve("Lingle").resolve(String.valueOf(k));
             Files.createDirectories(dstDir);
             for (String map : LingleState.selectedPracticeMaps) {
-                Path target = savesDir.resolve(map);
-                Path link = dstDir.resolve(map);
-                if (Files.isSymbolicLink(link)) Files.deleteIfExists(link);
+                String name = practiceMapDirName(savesDir, map);
+                Path target = savesDir.resolve(name);
+                Path link = dstDir.resolve(name);
+                if (Files.isSymbolicLink(link)) {
+                    if (Files.readSymbolicLink(link).equals(target)) continue;
+                    Files.delete(link);
+                } else if (Files.exists(link)) {
+                    continue;
+                }
                 try { Files.createSymbolicLink(link, target); }
                 catch (FileAlreadyExistsException ignored) {}
             }
         }
     }
 
-    public static void preparePracticeMapLinks() throws IOException {
-        if (!LingleState.practiceMaps || !LingleState.enabled) return;
+    // The script also carries the snapshot restore, so it has to follow that setting even when no
+    // practice maps are linked. Only rewritten once the startup service uses it.
+    public static void refreshStartupScript() throws IOException {
+        Path script = Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/scripts/link_practice_maps.sh");
+        if (Files.exists(script)) writePracticeMapScript();
+    }
+
+    // The startup service runs this script at boot, before Lingle itself is running
+    private static void writePracticeMapScript() throws IOException {
         Path home = Path.of(System.getProperty("user.home"));
         Path scriptsDir = home.resolve(".local/share/lingle/scripts");
         Files.createDirectories(scriptsDir);
+        Path savesDir = practiceSavesDir();
 
         StringBuilder sb = new StringBuilder("#!/bin/bash\nset -e\n\n");
-        sb.append("for k in {1..").append(LingleState.instanceCount).append("}\ndo\n")
+        sb.append("for k in {1..").append(Math.max(1, LingleState.instanceCount)).append("}\ndo\n")
                 .append("  mkdir -p \"$HOME/Lingle/$k\"\n");
-        for (String map : LingleState.selectedPracticeMaps) {
-            sb.append("  ln -sf \"$HOME/.local/share/lingle/saves/Z_")
-                    .append(map).append("\" \"$HOME/Lingle/$k/\"\n");
+        if (LingleState.practiceMaps) {
+            for (String map : LingleState.selectedPracticeMaps) {
+                String name = practiceMapDirName(savesDir, map);
+                if (PracticeMapMaterializer.enabled()) {
+                    // tmpfs is empty after boot; Lingle rebuilds the master on its next start
+                    sb.append("  [ -e \"$HOME/Lingle/$k/").append(name).append("\" ] || cp -a \"$HOME/.local/share/lingle/saves/")
+                            .append(name).append("\" \"$HOME/Lingle/$k/\"\n");
+                } else {
+                    sb.append("  ln -sfn \"$HOME/.local/share/lingle/saves/")
+                            .append(name).append("\" \"$HOME/Lingle/$k/\"\n");
+                }
+            }
+        }
+        if (LingleState.snapshotEnabled) {
+            // Worlds saved by TmpfsSnapshot; cp -n leaves anything already in tmpfs alone
+            sb.append("  if [ -d \"$HOME/.local/share/lingle/snapshot/$k\" ]; then\n")
+                    .append("    cp -an \"$HOME/.local/share/lingle/snapshot/$k/.\" \"$HOME/Lingle/$k/\" || true\n")
+                    .append("  fi\n");
         }
         sb.append("done\n");
 
         Path linkScript = scriptsDir.resolve("link_practice_maps.sh");
+        if (Files.exists(linkScript) && Files.readString(linkScript).contentEquals(sb)) return;
         Files.writeString(linkScript, sb.toString(), StandardCharsets.UTF_8);
         linkScript.toFile().setExecutable(true);
-        new ProcessBuilder("/bin/bash", linkScript.toString()).start();
     }
 
     public static void installCreateDirsService(JFrame parent) {
         try {
             LingleLogger.logInfo("Installing Lingle startup service...");
             preparePracticeMapLinks();
+            writePracticeMapScript();
 
             Path home = Path.of(System.getProperty("user.home"));
             Path scriptsDir = home.resolve(".local/share/lingle/scripts");
@@ -164,6 +377,59 @@ public class LinkInstancesService {
         }
     }
 
+    // config.json listed different instances after an external edit. Linking replaces an instance's
+    // saves folder, which the Link Instances dialog asks about first, so only instances appended to
+    // the list whose saves folder is missing or empty are linked here. Anything else is logged and
+    // the state keeps describing the links that actually exist.
+    public static void reconfigure(List<String> before, List<String> after) {
+        List<String> linked = new ArrayList<>(before);
+        if (after.size() > before.size() && after.subList(0, before.size()).equals(before)) {
+            Path home = Path.of(System.getProperty("user.home"));
+            Path instancesDir = home.resolve(".local/share/PrismLauncher/instances");
+            for (String inst : after.subList(before.size(), after.size())) {
+                Path saves = instancesDir.resolve(inst).resolve("minecraft/saves");
+                if (!Files.isDirectory(instancesDir.resolve(inst)) || !missingOrEmpty(saves)) break;
+                LinkStep step = new LinkStep(saves, home.resolve("Lingle").resolve(String.valueOf(linked.size() + 1)));
+                try {
+                    linkStep(step);
+                    if (step.aside != null) Files.deleteIfExists(step.aside);
+                    linked.add(inst);
+                } catch (IOException e) {
+                    rollback(step);
+                    LingleLogger.logError("Linking " + inst + " from config.json failed", e);
+                    break;
+                }
+            }
+        }
+        if (linked.equals(after)) return;
+        LingleLogger.logError("config.json lists linked instances " + after + " but " + linked
+                + " are linked; use Link Instances in Lingle to apply the rest");
+        // Runs on the config watcher thread; the state itself is only changed on the EDT. The
+        // instance count stays as the file set it.
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                // The Link Instances dialog may have changed the list meanwhile, and its result wins
+                if (!LingleState.linkedInstances.equals(after)) return;
+                LingleState.linkedInstances = linked;
+                LingleState.saveState();
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            LingleLogger.logError("Saving the linked instances failed: " + e.getCause());
+        }
+    }
+
+    private static boolean missingOrEmpty(Path saves) {
+        if (!Files.exists(saves, LinkOption.NOFOLLOW_LINKS)) return true;
+        if (Files.isSymbolicLink(saves) || !Files.isDirectory(saves)) return false;
+        try (var stream = Files.list(saves)) {
+            return stream.findAny().isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     public static void removeInstanceLinks(List<String> instancesToRemove) throws IOException {
         if (instancesToRemove.isEmpty()) return;
 
@@ -179,18 +445,23 @@ public class LinkInstancesService {
             }
         }
 
-        // Sync state with filesystem
-        List<String> actuallyLinked = new ArrayList<>();
+        // Sync state with filesystem, keeping the existing order so as few slots as possible move
+        Set<String> linkedOnDisk = new HashSet<>();
         if (Files.exists(instancesDir)) {
             try (var stream = Files.list(instancesDir)) {
                 for (Path instanceDir : stream.filter(Files::isDirectory).toList()) {
                     Path savesPath = instanceDir.resolve("minecraft/saves");
                     if (Files.isSymbolicLink(savesPath)) {
-                        actuallyLinked.add(instanceDir.getFileName().toString());
+                        linkedOnDisk.add(instanceDir.getFileName().toString());
                     }
                 }
             }
         }
+        List<String> actuallyLinked = new ArrayList<>();
+        for (String name : LingleState.linkedInstances) {
+            if (linkedOnDisk.remove(name)) actuallyLinked.add(name);
+        }
+        actuallyLinked.addAll(new TreeSet<>(linkedOnDisk));
 
         // Update state to reflect actual filesystem state
         LingleState.linkedInstances = actuallyLinked;
@@ -208,58 +479,137 @@ public class LinkInstancesService {
             LingleState.practiceMaps = false;
             LingleState.saveState();
         }
+
+        // Slot directories may have moved under ADW's watches
+        AdwManager.startAdwIfNeeded();
+    }
+
+    // Moves ~/Lingle/.slot-N-* folders left by an interrupted renumbering back to slot N. One whose
+    // slot exists again is left alone rather than merged.
+    public static void recoverStagedSlots() {
+        Path lingleDir = Path.of(System.getProperty("user.home")).resolve("Lingle");
+        if (!Files.isDirectory(lingleDir)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(lingleDir, ".slot-*")) {
+            for (Path tmp : ds) {
+                String[] parts = tmp.getFileName().toString().split("-");
+                if (parts.length != 3 || !parts[1].matches("\\d+")) continue;
+                Path slot = lingleDir.resolve(parts[1]);
+                if (Files.exists(slot, LinkOption.NOFOLLOW_LINKS)) {
+                    LingleLogger.logError("Cannot move " + tmp + " back, " + slot + " exists");
+                    continue;
+                }
+                try {
+                    Files.move(tmp, slot, StandardCopyOption.ATOMIC_MOVE);
+                    LingleLogger.logInfo("Moved " + tmp + " back to " + slot);
+                } catch (IOException e) {
+                    LingleLogger.logError("Failed to move " + tmp + " back", e);
+                }
+            }
+        } catch (IOException ignored) {}
     }
 
+    // The ~/Lingle slot an instance's saves resolve to, or null
+    private static Integer linkedSlot(Path instanceDir, Map<Path, Integer> slotsByRealPath) {
+        Path saves = instanceDir.resolve("minecraft/saves");
+        if (!Files.isSymbolicLink(saves)) return null;
+        try {
+            return slotsByRealPath.get(saves.toRealPath());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Brings ~/Lingle/N and the saves links in line with LingleState.linkedInstances by moving slot
+    // directories instead of wiping them: linked instance i ends up in slot i + 1 with its worlds.
     private static void renumberInstances() throws IOException {
         Path home = Path.of(System.getProperty("user.home"));
         Path lingleDir = home.resolve("Lingle");
+        Path instancesDir = home.resolve(".local/share/PrismLauncher/instances");
+        List<String> instances = LingleState.linkedInstances;
 
-        // First, remove all old symlinks and clean up directories
-        if (Files.exists(lingleDir)) {
+        // Actual state, from one scan of ~/Lingle and one resolved link per instance. Links are
+        // compared by real path, since the same slot can be spelled differently, e.g. through a
+        // symlinked home or /var/home on Silverblue.
+        Map<Path, Integer> slotsByRealPath = new HashMap<>();
+        if (Files.isDirectory(lingleDir)) {
             try (var stream = Files.list(lingleDir)) {
                 for (Path dir : stream.filter(Files::isDirectory).toList()) {
                     String name = dir.getFileName().toString();
-                    // Only process numbered directories
-                    if (name.matches("\\d+")) {
-                        // Delete the directory and all its contents
-                        try (var walk = Files.walk(dir)) {
-                            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
-                                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
-                            });
-                        }
-                    }
+                    if (name.matches("\\d+")) slotsByRealPath.put(dir.toRealPath(), Integer.parseInt(name));
                 }
             }
         }
+        Map<String, Integer> currentSlot = new HashMap<>();
+        for (String instance : instances) {
+            Integer n = linkedSlot(instancesDir.resolve(instance), slotsByRealPath);
+            if (n != null && !currentSlot.containsValue(n)) currentSlot.put(instance, n);
+        }
 
-        // Now recreate symlinks with correct numbering
-        int idx = 1;
-        for (String instanceName : LingleState.linkedInstances) {
-            Path newLingleDir = lingleDir.resolve(String.valueOf(idx++));
-            Files.createDirectories(newLingleDir);
+        // Slots nobody will own any more, e.g. the one of an unlinked instance. A slot some other
+        // instance's saves still resolve to holds live worlds and is never discarded.
+        Set<Integer> kept = new HashSet<>(currentSlot.values());
+        if (Files.isDirectory(instancesDir)) {
+            try (var stream = Files.list(instancesDir)) {
+                for (Path inst : stream.toList()) {
+                    Integer n = linkedSlot(inst, slotsByRealPath);
+                    if (n != null) kept.add(n);
+                }
+            }
+        }
+        for (int slot : slotsByRealPath.values()) {
+            if (!kept.contains(slot)) WorldReclaimer.discard(lingleDir.resolve(String.valueOf(slot)));
+        }
+
+        // Moves go through a temporary name first so slots can swap or shift without colliding.
+        // The temporary name keeps the old slot number, so recoverStagedSlots can undo a crash.
+        Map<Path, Path> staged = new LinkedHashMap<>();
+        List<Path> done = new ArrayList<>();
+        try {
+            for (int i = 0; i < instances.size(); i++) {
+                Integer from = currentSlot.get(instances.get(i));
+                int to = i + 1;
+                if (from == null || from == to) continue;
+                Path tmp = lingleDir.resolve(".slot-" + from + "-" + System.nanoTime());
+                Files.move(lingleDir.resolve(String.valueOf(from)), tmp, StandardCopyOption.ATOMIC_MOVE);
+                staged.put(tmp, lingleDir.resolve(String.valueOf(to)));
+            }
+            for (Map.Entry<Path, Path> move : staged.entrySet()) {
+                Files.move(move.getKey(), move.getValue(), StandardCopyOption.ATOMIC_MOVE);
+                done.add(move.getKey());
+            }
+        } catch (IOException e) {
+            // Back to the old numbers, which the saves links still point at
+            for (Path tmp : done) {
+                try {
+                    Files.move(staged.get(tmp), tmp, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ignored) {}
+            }
+            recoverStagedSlots();
+            throw e;
+        }
 
-            Path savesPath = home.resolve(".local/share/PrismLauncher/instances")
-                    .resolve(instanceName).resolve("minecraft/saves");
+        // Only links that point anywhere else are touched
+        boolean createdSlots = false;
+        for (int i = 0; i < instances.size(); i++) {
+            Path slotDir = lingleDir.resolve(String.valueOf(i + 1));
+            if (!Files.isDirectory(slotDir)) {
+                Files.createDirectories(slotDir);
+                createdSlots = true;
+            }
 
-            // Remove old symlink if it exists
+            Path savesPath = instancesDir.resolve(instances.get(i)).resolve("minecraft/saves");
             if (Files.isSymbolicLink(savesPath)) {
+                Path target = savesPath.getParent().resolve(Files.readSymbolicLink(savesPath)).normalize();
+                if (target.equals(slotDir)) continue;
                 Files.delete(savesPath);
             } else if (Files.exists(savesPath)) {
-                // Clean up if it's a real directory
-                try (var stream = Files.walk(savesPath)) {
-                    stream.sorted(Comparator.reverseOrder()).forEach(p -> {
-                        try { Files.deleteIfExists(p); } catch (IOException ignored) {}
-                    });
-                }
+                WorldReclaimer.discard(savesPath);
             }
-
-            // Create new symlink
-            try { Files.createSymbolicLink(savesPath, newLingleDir); }
-            catch (FileAlreadyExistsException ignored) {}
+            Files.createSymbolicLink(savesPath, slotDir);
         }
 
-        // Re-link practice maps if they exist
-        if (LingleState.practiceMaps && !LingleState.selectedPracticeMaps.isEmpty()) {
+        // Moved slots keep their practice map links; only fresh ones need them
+        if (createdSlots && LingleState.practiceMaps && !LingleState.selectedPracticeMaps.isEmpty()) {
             linkPracticeMapsNow();
         }
     }
@@ -268,18 +618,23 @@ public class LinkInstancesService {
         Path home = Path.of(System.getProperty("user.home"));
 
         // Remove practice map symlinks from all instance directories
+        Path savesDir = practiceSavesDir();
         for (int k = 1; k <= LingleState.instanceCount; k++) {
             Path instanceDir = home.resolve("Lingle").resolve(String.valueOf(k));
             if (Files.exists(instanceDir)) {
                 for (String map : LingleState.selectedPracticeMaps) {
-                    Path link = instanceDir.resolve(map);
+                    Path link = instanceDir.resolve(practiceMapDirName(savesDir, map));
                     if (Files.isSymbolicLink(link)) {
                         Files.deleteIfExists(link);
+                    } else if (PracticeMapMaterializer.enabled() && Files.isDirectory(link)) {
+                        WorldReclaimer.discard(link);
                     }
                 }
             }
         }
 
+        PracticeMapMaterializer.removeMasters(practiceMapDirNames(savesDir));
+
         // Clear state
         LingleState.selectedPracticeMaps.clear();
         LingleState.practiceMaps = false;
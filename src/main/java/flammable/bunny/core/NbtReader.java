@@ -0,0 +1,137 @@
+package flammable.bunny.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+// Minimal streaming reader for GZIP'd NBT files such as level.dat. It only decodes the tags asked
+// for by dotted path (e.g. "Data.Player.Dimension"), skips every other payload in place and stops
+// reading as soon as all requested tags have been seen.
+public final class NbtReader {
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private final DataInputStream in;
+    private final Set<String> wanted;
+    private final Map<String, Object> found = new HashMap<>();
+
+    private NbtReader(InputStream in, Set<String> wanted) {
+        this.in = new DataInputStream(in);
+        this.wanted = wanted;
+    }
+
+    // Returns the requested tags that exist in the file. Values are Byte, Short, Integer, Long,
+    // Float, Double or String; array, list and compound tags cannot be requested.
+    public static Map<String, Object> read(Path file, Set<String> paths) throws IOException {
+        try (InputStream raw = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)), 8192)) {
+            NbtReader reader = new NbtReader(raw, paths);
+            int type = reader.in.readUnsignedByte();
+            if (type != TAG_COMPOUND) throw new IOException("Not an NBT compound: " + file);
+            reader.skipName();
+            reader.readCompound("");
+            return reader.found;
+        }
+    }
+
+    // Returns true once every wanted tag was found, which unwinds the whole parse.
+    private boolean readCompound(String path) throws IOException {
+        while (true) {
+            int type = in.readUnsignedByte();
+            if (type == TAG_END) return false;
+
+            String name = in.readUTF();
+            String child = path.isEmpty() ? name : path + "." + name;
+            if (type == TAG_COMPOUND && isOnWantedPath(child)) {
+                if (readCompound(child)) return true;
+            } else if (wanted.contains(child) && type != TAG_COMPOUND) {
+                Object value = readScalar(type);
+                if (value != null) found.put(child, value);
+                else skipPayload(type);
+                if (found.size() == wanted.size()) return true;
+            } else {
+                skipPayload(type);
+            }
+        }
+    }
+
+    private boolean isOnWantedPath(String path) {
+        if (path.isEmpty()) return true;
+        for (String w : wanted) {
+            if (w.length() > path.length() && w.startsWith(path) && w.charAt(path.length()) == '.') return true;
+        }
+        return false;
+    }
+
+    private Object readScalar(int type) throws IOException {
+        return switch (type) {
+            case TAG_BYTE -> in.readByte();
+            case TAG_SHORT -> in.readShort();
+            case TAG_INT -> in.readInt();
+            case TAG_LONG -> in.readLong();
+            case TAG_FLOAT -> in.readFloat();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_STRING -> in.readUTF();
+            default -> null;
+        };
+    }
+
+    private void skipName() throws IOException {
+        skipFully(in.readUnsignedShort());
+    }
+
+    private void skipPayload(int type) throws IOException {
+        switch (type) {
+            case TAG_BYTE -> skipFully(1);
+            case TAG_SHORT -> skipFully(2);
+            case TAG_INT, TAG_FLOAT -> skipFully(4);
+            case TAG_LONG, TAG_DOUBLE -> skipFully(8);
+            case TAG_BYTE_ARRAY -> skipFully(in.readInt());
+            case TAG_STRING -> skipFully(in.readUnsignedShort());
+            case TAG_INT_ARRAY -> skipFully(in.readInt() * 4L);
+            case TAG_LONG_ARRAY -> skipFully(in.readInt() * 8L);
+            case TAG_LIST -> {
+                int elementType = in.readUnsignedByte();
+                int length = in.readInt();
+                for (int i = 0; i < length && elementType != TAG_END; i++) skipPayload(elementType);
+            }
+            case TAG_COMPOUND -> {
+                int t;
+                while ((t = in.readUnsignedByte()) != TAG_END) {
+                    skipName();
+                    skipPayload(t);
+                }
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
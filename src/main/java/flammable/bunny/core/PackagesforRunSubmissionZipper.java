@@ -1,178 +1,227 @@
 package flammable.bunny.core;
 
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
-import java.util.Set;
-
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Builds the speedrun.com submission zip for the world in ~/speedrunigt/latest_world.json:
+// <world>.zip at the root, the five worlds played before it in Last5/, worlds created after it in
+// Background/ and the three newest logs in logs/. Every world is zipped in memory on a
+// ForkJoinPool and streamed straight into the outer zip, in the same order the old script used.
+// Worlds the SubmissionCache already has an up-to-date zip for are copied instead. CompressionPolicy
+// picks STORED or DEFLATED for every entry and the totals per file category are logged at the end.
 public final class PackagesforRunSubmissionZipper {
 
-    private PackagesforRunSubmissionZipper() {}
-
-    public static Path install(Path outDir) throws IOException {
-        if (!DependencyInstaller.ensureDeps(null))
-            throw new IOException("Missing required dependencies (jq, zip, python3).");
-
-        Path home = Path.of(System.getProperty("user.home"));
-        Path scriptsDir = home.resolve(".local/share/lingle/scripts");
-        Files.createDirectories(scriptsDir);
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss");
 
-        Path scriptPath = scriptsDir.resolve("src_auto_zip.py");
-
-        String script = """
-            #!/usr/bin/env python3
-            import json
-            import os
-            from sys import stderr, argv, exit
-            from datetime import datetime
-            import zipfile
-            from zipfile import ZipFile
-            import shutil
-
-            if len(argv) < 2:
-                print("Usage: src_auto_zip.py <output_directory>", file=stderr)
-                exit(2)
-
-            out_dir = argv[1]
-            if not os.path.isdir(out_dir):
-                print(f"Output directory does not exist: {out_dir}", file=stderr)
-                exit(2)
-
-            print("Zipping files...")
+    private PackagesforRunSubmissionZipper() {}
 
-            home = os.environ.get("HOME")
-            if home is None:
-                print("$HOME is not defined.", file=stderr)
-                exit(1)
+    private record WorldJob(String entryName, Path world) {}
 
-            srigt_home = os.path.join(home, "speedrunigt")
-
-            json_path = os.path.join(srigt_home, "latest_world.json")
-            if not os.path.exists(json_path):
-                print(f"JSON file not found: {json_path}", file=stderr)
-                exit(4)
+    public static Path createSubmission(Path outDir) throws IOException {
+        if (!Files.isDirectory(outDir)) throw new IOException("Output directory does not exist: " + outDir);
 
-            with open(json_path) as file:
-                latest_world = json.load(file)
-
-            world_path = latest_world['world_path']
-            path_components = world_path.split("/")
-
-            # Remove last two components from "<mc_dir>/saves/<world_name>"
-            mc_dir = "/".join(path_components[:-2:])
-
-            # Remove last component from "<mc_saves_dir>/<world_name>"
-            mc_saves_dir = "/".join(path_components[:-1:])
-
-            # Has the last component form "<mc_saves_dir>/<world_name>"
-            world_name = path_components[-1]
-
-            today = datetime.now()
-            str_date = today.strftime("%H-%M-%S")
-            str_time = today.strftime("%Y-%m-%d")
-            output_file_name = os.path.join(out_dir, f"LIGNLE-SRC-Submission-{str_time}-{str_date}.zip")
-            zip = ZipFile(output_file_name, "w", zipfile.ZIP_DEFLATED)
-
-            saves = os.listdir(mc_saves_dir)
-
-            latest_world_write_time = None
-            for save_dir in saves:
-                if save_dir == world_name:
-                    full_save_path = os.path.join(mc_saves_dir, save_dir)
-                    zip_name = f"{save_dir}.zip"
-                    print(f"Zipping {full_save_path} at the root")
-                    shutil.make_archive(save_dir, 'zip', full_save_path)
-                    zip.write(zip_name)
-                    os.remove(zip_name)
-                    latest_world_write_time = os.path.getmtime(full_save_path)
-                    break
-            else:
-                print(f"No directory found in saves for world name: '{world_name}' in saves: '{mc_saves_dir}'", file=stderr)
-                exit(1)
-
-
-            def last5_sorter(save):
-                if latest_world_write_time is None:
-                    exit(1)
-
-                return latest_world_write_time - os.path.getmtime(os.path.join(mc_saves_dir, save))
-
-
-            def logs_sorter(log):
-                return os.path.getmtime(os.path.join(mc_logs_dir, log))
-
-
-            def last5_filter(save):
-                if latest_world_write_time is None:
-                    exit(1)
-
-                return os.path.getmtime(os.path.join(mc_saves_dir, save)) < latest_world_write_time
-
-
-            def background_worlds_filter(save):
-                if latest_world_write_time is None:
-                    exit(1)
-
-                return os.path.getmtime(os.path.join(mc_saves_dir, save)) > latest_world_write_time
+        Path home = Path.of(System.getProperty("user.home"));
+        Path latestJson = home.resolve("speedrunigt").resolve("latest_world.json");
+        if (!Files.exists(latestJson)) throw new IOException("JSON file not found: " + latestJson);
+
+        Path world = Path.of(new JSONObject(Files.readString(latestJson)).getString("world_path"));
+        Path savesDir = world.getParent();
+        Path mcDir = savesDir.getParent();
+        if (!Files.isDirectory(world)) {
+            throw new IOException("No directory found in saves for world name: '" + world.getFileName() + "' in saves: '" + savesDir + "'");
+        }
+        long runTime = Files.getLastModifiedTime(world).toMillis();
+
+        // Newest first, from the index instead of listing and sorting the saves folder again
+        WorldIndex index = WorldIndex.current(savesDir);
+        List<Path> others = new ArrayList<>();
+        for (WorldIndex.Entry e : index.byRecentActivity(null)) {
+            Path p = index.dir().resolve(e.name);
+            if (!e.name.equals(world.getFileName().toString()) && Files.isDirectory(p)) others.add(p);
+        }
+        List<Path> last5 = others.stream().filter(p -> mtime(p) < runTime).limit(5).toList();
+        List<Path> background = others.stream().filter(p -> mtime(p) > runTime).toList();
+
+        List<WorldJob> jobs = new ArrayList<>();
+        jobs.add(new WorldJob(world.getFileName() + ".zip", world));
+        for (Path p : last5) jobs.add(new WorldJob("Last5/" + p.getFileName() + ".zip", p));
+        for (Path p : background) jobs.add(new WorldJob("Background/" + p.getFileName() + ".zip", p));
+
+        Path out = outDir.resolve("LIGNLE-SRC-Submission-" + LocalDateTime.now().format(STAMP) + ".zip");
+        Path tmp = outDir.resolve("." + out.getFileName() + ".part");
+        long start = System.nanoTime();
+        CompressionPolicy.Stats stats = new CompressionPolicy.Stats();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp))) {
+            zip.setLevel(CompressionPolicy.level());
+            writeWorlds(zip, jobs, stats);
+            writeLogs(zip, mcDir.resolve("logs"), stats);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, out, StandardCopyOption.ATOMIC_MOVE);
+        LingleLogger.logInfo("Submission packaged " + jobs.size() + " world(s) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        stats.log();
+        return out;
+    }
 
+    // Zips run ahead of the writer by at most one world per thread, so only that many compressed
+    // worlds are held in memory at once.
+    private static void writeWorlds(ZipOutputStream zip, List<WorldJob> jobs, CompressionPolicy.Stats stats) throws IOException {
+        int window = CompressionPolicy.threads();
+        ForkJoinPool pool = new ForkJoinPool(window);
+        List<ForkJoinTask<byte[]>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                while (tasks.size() < jobs.size() && tasks.size() < i + window) {
+                    Path world = jobs.get(tasks.size()).world;
+                    tasks.add(pool.submit(() -> {
+                        byte[] cached = SubmissionCache.lookup(world);
+                        if (cached == null) return zipWorld(world, stats);
+                        stats.cacheHit(cached.length);
+                        return cached;
+                    }));
+                }
+                WorldJob job = jobs.get(i);
+                if (job.entryName.startsWith("Background/") && !jobs.get(i - 1).entryName.startsWith("Background/")) {
+                    addDirEntry(zip, "Background/");
+                }
+                byte[] data = tasks.get(i).get();
+                tasks.set(i, null);
+                LingleLogger.logInfo("Zipping " + job.world + " as " + job.entryName);
+                // The files inside were counted when the world was zipped
+                writeEntry(zip, new ZipEntry(job.entryName), data, null);
+                // The old script always created Last5/ right after the run world
+                if (i == 0) addDirEntry(zip, "Last5/");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while packaging", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-            last_five_worlds = sorted(filter(last5_filter, saves), key=last5_sorter)[:5]
-            zip.mkdir("Last5")
-            for save_dir in last_five_worlds:
-                full_save_path = os.path.join(mc_saves_dir, save_dir)
-                arcname = f"{os.path.join("Last5", save_dir)}.zip"
-                zip_name = f"{save_dir}.zip"
-                print(f"Zipping {full_save_path} into 'Last5' directory")
-                shutil.make_archive(save_dir, 'zip', full_save_path)
-                zip.write(zip_name, arcname)
-                os.remove(zip_name)
+    private static void writeLogs(ZipOutputStream zip, Path logsDir, CompressionPolicy.Stats stats) throws IOException {
+        addDirEntry(zip, "logs/");
+        if (!Files.isDirectory(logsDir)) return;
+        List<Path> logs;
+        try (var stream = Files.list(logsDir)) {
+            logs = stream.sorted(Comparator.comparingLong(PackagesforRunSubmissionZipper::mtime).reversed()).limit(3).toList();
+        }
+        for (Path log : logs) {
+            LingleLogger.logInfo("Zipping " + log + " into 'logs' directory");
+            ZipEntry entry = new ZipEntry("logs/" + log.getFileName());
+            entry.setLastModifiedTime(Files.getLastModifiedTime(log));
+            writeEntry(zip, entry, Files.readAllBytes(log), stats);
+        }
+    }
 
-            background_worlds = list(filter(background_worlds_filter, saves))
-            if len(background_worlds) != 0:
-                zip.mkdir("Background")
-                for save_dir in background_worlds:
-                    full_save_path = os.path.join(mc_saves_dir, save_dir)
-                    arcname = f"{os.path.join("Background", save_dir)}.zip"
-                    zip_name = f"{save_dir}.zip"
-                    print(f"Zipping {full_save_path} into 'Background' directory")
-                    shutil.make_archive(save_dir, 'zip', full_save_path)
-                    zip.write(zip_name, arcname)
-                    os.remove(zip_name)
+    private static void addDirEntry(ZipOutputStream zip, String name) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.closeEntry();
+    }
 
+    // Same layout as shutil.make_archive(root_dir=world): paths relative to the world folder
+    static byte[] zipWorld(Path world) throws IOException {
+        return zipWorld(world, new CompressionPolicy.Stats());
+    }
 
-            mc_logs_dir = os.path.join(mc_dir, "logs")
-            logs = sorted(os.listdir(mc_logs_dir), key=logs_sorter, reverse=True)[:3]
-            zip.mkdir("logs")
-            for log_name in logs:
-                full_log_path = os.path.join(mc_logs_dir, log_name)
-                arcname = os.path.join("logs", log_name)
-                print(f"Zipping {full_log_path} into 'logs' directory")
-                zip.write(full_log_path, arcname)
+    static byte[] zipWorld(Path world, CompressionPolicy.Stats stats) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(1 << 20);
+        try (ZipOutputStream zip = new ZipOutputStream(buf)) {
+            zip.setLevel(CompressionPolicy.level());
+            writeTree(zip, world, stats);
+        }
+        return buf.toByteArray();
+    }
 
-            zip.close()
+    private static void writeTree(ZipOutputStream zip, Path root, CompressionPolicy.Stats stats) throws IOException {
+        // Practice maps are symlinked into saves, so links are followed like os.walk in the old script
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root)) putEntry(zip, root.relativize(dir) + "/", attrs.lastModifiedTime(), null, stats);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                putEntry(zip, root.relativize(file).toString(), attrs.lastModifiedTime(), file, stats);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // session.lock and files the game is replacing may vanish mid-walk
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
 
-            print("Done")
-            """;
+    private static void putEntry(ZipOutputStream zip, String name, FileTime mtime, Path file,
+                                 CompressionPolicy.Stats stats) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setLastModifiedTime(mtime);
+        if (file == null) {
+            zip.putNextEntry(entry);
+            zip.closeEntry();
+            return;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            data = new byte[0];
+        }
+        writeEntry(zip, entry, data, stats);
+    }
 
-        Files.writeString(
-                scriptPath,
-                script,
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING
-        );
+    // STORED entries need their size and CRC up front, which is why whole files are read first.
+    // stats is null for entries that are not counted per file.
+    private static void writeEntry(ZipOutputStream zip, ZipEntry entry, byte[] data, CompressionPolicy.Stats stats)
+            throws IOException {
+        long cpu = CompressionPolicy.cpuNanos();
+        CompressionPolicy.Category category = CompressionPolicy.categorize(entry.getName());
+        if (CompressionPolicy.store(category, data)) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+        if (stats != null) stats.add(category, data.length, entry.getCompressedSize(), CompressionPolicy.cpuNanos() - cpu);
+    }
 
+    private static long mtime(Path p) {
         try {
-            Set<PosixFilePermission> perms = EnumSet.of(
-                    PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE,
-                    PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_EXECUTE,
-                    PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_EXECUTE
-            );
-            Files.setPosixFilePermissions(scriptPath, perms);
-        } catch (UnsupportedOperationException ignored) {}
-
-        return scriptPath;
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
     }
 }
@@ -0,0 +1,182 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Keeps practice maps in tmpfs instead of symlinking every instance to the copy on disk. One
+// pristine master of each map lives in ~/Lingle/.practice and every instance gets its own copy
+// of it, so loads stay in RAM and instances never write into each other's files.
+public final class PracticeMapMaterializer {
+
+    public static final String MODE_SYMLINK = "symlink";
+    public static final String MODE_MATERIALIZE = "materialize";
+
+    // null until the first clone has tried a reflink on this filesystem
+    private static volatile Boolean reflinkSupported = null;
+
+    private PracticeMapMaterializer() {}
+
+    public static boolean enabled() {
+        return MODE_MATERIALIZE.equals(LingleState.practiceMapMode);
+    }
+
+    public static Path masterDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle").resolve(".practice");
+    }
+
+    // Gives every slot a private copy of each map. Slots that already have one keep it.
+    public static void materialize(Path savesDir, List<String> dirNames, int instanceCount) throws IOException {
+        Path lingleDir = Path.of(System.getProperty("user.home")).resolve("Lingle");
+        for (String name : dirNames) {
+            Path master = ensureMaster(savesDir.resolve(name), name);
+            for (int k = 1; k <= instanceCount; k++) {
+                Path dst = lingleDir.resolve(String.valueOf(k)).resolve(name);
+                if (Files.isSymbolicLink(dst)) Files.delete(dst);
+                else if (Files.exists(dst)) continue;
+                Files.createDirectories(dst.getParent());
+                cloneWorld(master, dst);
+            }
+        }
+    }
+
+    // Throws the played copy away and clones the master again. The old copy is only renamed into
+    // the trash here; the reclaimer frees it in the background.
+    public static void resetToPristine(Path savesDir, List<String> dirNames, int instanceCount) throws IOException {
+        Path lingleDir = Path.of(System.getProperty("user.home")).resolve("Lingle");
+        for (String name : dirNames) {
+            Path master = ensureMaster(savesDir.resolve(name), name);
+            for (int k = 1; k <= instanceCount; k++) {
+                Path dst = lingleDir.resolve(String.valueOf(k)).resolve(name);
+                if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS)) WorldReclaimer.discard(dst);
+                Files.createDirectories(dst.getParent());
+                cloneWorld(master, dst);
+            }
+        }
+        LingleLogger.logSuccess("Practice maps reset to pristine in " + instanceCount + " instance(s)");
+    }
+
+    public static void removeMasters(List<String> dirNames) {
+        for (String name : dirNames) {
+            Path master = masterDir().resolve(name);
+            if (Files.exists(master)) WorldReclaimer.discard(master);
+        }
+    }
+
+    // The master is rebuilt whenever the map on disk has a different level.dat than the master
+    private static Path ensureMaster(Path source, String name) throws IOException {
+        if (!Files.isDirectory(source)) throw new IOException("Practice map not found: " + source);
+        Path master = masterDir().resolve(name);
+        Path srcLevel = source.resolve("level.dat");
+        Path masterLevel = master.resolve("level.dat");
+        if (Files.isDirectory(master)) {
+            try {
+                FileTime a = Files.getLastModifiedTime(srcLevel);
+                FileTime b = Files.getLastModifiedTime(masterLevel);
+                if (a.equals(b)) return master;
+            } catch (IOException ignored) {}
+            WorldReclaimer.discard(master);
+        }
+
+        Files.createDirectories(masterDir());
+        Path tmp = masterDir().resolve(".tmp-" + name + "-" + System.nanoTime());
+        copyTree(source, tmp);
+        Files.move(tmp, master, StandardCopyOption.ATOMIC_MOVE);
+        LingleLogger.logInfo("Practice map master ready: " + master);
+        return master;
+    }
+
+    private static void cloneWorld(Path master, Path dst) throws IOException {
+        if (reflinkSupported != Boolean.FALSE) {
+            if (reflink(master, dst)) {
+                reflinkSupported = true;
+                return;
+            }
+            if (reflinkSupported == null) {
+                reflinkSupported = false;
+                LingleLogger.logInfo("Reflinks not supported under " + master.getParent() + ", using hardlinks and copies");
+            }
+        }
+        linkOrCopyTree(master, dst);
+    }
+
+    private static boolean reflink(Path master, Path dst) {
+        try {
+            Process p = new ProcessBuilder("cp", "-a", "--reflink=always", master.toString(), dst.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (p.waitFor(30, TimeUnit.SECONDS) && p.exitValue() == 0) return true;
+            p.destroyForcibly();
+        } catch (IOException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // cp leaves whatever it managed to copy behind
+        if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS)) WorldReclaimer.deleteTree(dst);
+        return false;
+    }
+
+    // Minecraft rewrites region, entity and poi files in place, so those must be private copies.
+    // Files it only ever replaces through a rename, or never writes, can share the master's inode.
+    static boolean safeToShare(Path rel) {
+        String first = rel.getName(0).toString();
+        if (first.equals("datapacks")) return true;
+        if (rel.getNameCount() == 1) {
+            String name = first;
+            return name.equals("level.dat") || name.equals("level.dat_old") || name.equals("icon.png");
+        }
+        return first.equals("playerdata") && rel.toString().endsWith(".dat");
+    }
+
+    private static void linkOrCopyTree(Path master, Path dst) throws IOException {
+        Files.walkFileTree(master, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dst.resolve(master.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path rel = master.relativize(file);
+                if (rel.toString().equals("session.lock")) return FileVisitResult.CONTINUE;
+                Path target = dst.resolve(rel.toString());
+                if (safeToShare(rel)) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException ignored) {}
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void copyTree(Path source, Path dst) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dst.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path rel = source.relativize(file);
+                if (rel.toString().equals("session.lock")) return FileVisitResult.CONTINUE;
+                Files.copy(file, dst.resolve(rel.toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package flammable.bunny.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+// Immutable prefix trie. Lookups walk the name once and allocate nothing; the longest configured
+// prefix of the name wins. Children are kept in sorted char arrays and found by binary search.
+public final class PrefixTrie<V> {
+
+    private static final char[] NO_KEYS = new char[0];
+
+    private static final class Node<V> {
+        char[] keys = NO_KEYS;
+        Object[] children = new Object[0];
+        V value;
+
+        @SuppressWarnings("unchecked")
+        Node<V> child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? (Node<V>) children[i] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<V> childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return (Node<V>) children[i];
+            int at = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Object[] ch = new Object[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, ch, 0, at);
+            System.arraycopy(keys, at, k, at + 1, keys.length - at);
+            System.arraycopy(children, at, ch, at + 1, children.length - at);
+            Node<V> node = new Node<>();
+            k[at] = c;
+            ch[at] = node;
+            keys = k;
+            children = ch;
+            return node;
+        }
+    }
+
+    private final Node<V> root;
+
+    private PrefixTrie(Node<V> root) {
+        this.root = root;
+    }
+
+    // Empty prefixes are ignored. When the same prefix appears twice the earlier item is kept.
+    public static <V> PrefixTrie<V> compile(List<V> items, Function<V, String> prefixOf) {
+        Node<V> root = new Node<>();
+        for (V item : items) {
+            String prefix = prefixOf.apply(item);
+            if (prefix == null || prefix.isEmpty()) continue;
+            Node<V> node = root;
+            for (int i = 0; i < prefix.length(); i++) node = node.childOrCreate(prefix.charAt(i));
+            if (node.value == null) node.value = item;
+        }
+        return new PrefixTrie<>(root);
+    }
+
+    public V longestMatch(CharSequence name) {
+        V best = null;
+        Node<V> node = root;
+        for (int i = 0; i < name.length() && node != null; i++) {
+            node = node.child(name.charAt(i));
+            if (node != null && node.value != null) best = node.value;
+        }
+        return best;
+    }
+}
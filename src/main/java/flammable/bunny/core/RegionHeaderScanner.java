@@ -0,0 +1,36 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Counts generated chunks in Anvil region files by looking only at the chunk location table at
+// the start of each file. Chunk payloads are never read.
+public final class RegionHeaderScanner {
+
+    private static final int HEADER_BYTES = 8192;
+    private static final int CHUNKS_PER_REGION = 1024;
+
+    private RegionHeaderScanner() {}
+
+    public static int countChunksInRegion(Path regionFile) {
+        try (FileChannel ch = FileChannel.open(regionFile, StandardOpenOption.READ)) {
+            long size = ch.size();
+            // A region file without a full location table has no chunks in it yet
+            if (size < CHUNKS_PER_REGION * 4) return 0;
+            MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, size));
+            IntBuffer locations = header.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+            int count = 0;
+            for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+                if (locations.get(i) != 0) count++;
+            }
+            return count;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
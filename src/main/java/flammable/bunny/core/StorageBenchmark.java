@@ -0,0 +1,222 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+// Side-by-side comparison of the two world store backends. Both are mounted in a scratch directory,
+// the same set of worlds is written to each and the write throughput and the RAM each one ends up
+// holding are reported. Run with: java -jar Lingle.jar --bench-storage [worlds]
+public final class StorageBenchmark {
+
+    private static final int STORE_MB = 2048;
+    private static final int DEFAULT_WORLDS = 16;
+    private static final int MAX_WORLDS = 256;
+
+    private record SampleFile(String path, byte[] data) {}
+
+    private record Result(String backend, long bytes, long nanos, long ramBytes) {}
+
+    private StorageBenchmark() {}
+
+    public static int run(String[] args) {
+        int worlds = DEFAULT_WORLDS;
+        if (args.length > 1) {
+            try {
+                worlds = Integer.parseInt(args[1]);
+            } catch (NumberFormatException ignored) {
+                worlds = 0;
+            }
+            if (worlds < 1 || worlds > MAX_WORLDS) {
+                System.err.println("Usage: java -jar Lingle.jar --bench-storage [worlds, 1-" + MAX_WORLDS + "]");
+                return 2;
+            }
+        }
+        String algorithm = LingleState.zramAlgorithm;
+        Path base = Path.of(System.getProperty("java.io.tmpdir")).resolve("lingle-bench-" + ProcessHandle.current().pid());
+        Path tmpfsDir = base.resolve("tmpfs");
+        Path zramDir = base.resolve("zram");
+        Path devFile = base.resolve("zram.dev");
+
+        try {
+            Path sampleWorld = findSampleWorld();
+            List<SampleFile> sample = sampleWorld != null ? readWorld(sampleWorld) : syntheticWorld();
+            long worldBytes = sample.stream().mapToLong(f -> f.data.length).sum();
+            System.out.printf("Workload: %d worlds of %.1f MB (%s)%n", worlds, worldBytes / 1048576.0,
+                    sampleWorld != null ? "copies of " + sampleWorld.getFileName() : "synthetic region files");
+
+            Files.createDirectories(tmpfsDir);
+            Files.createDirectories(zramDir);
+            String uid = String.valueOf(Files.getAttribute(base, "unix:uid"));
+            String gid = String.valueOf(Files.getAttribute(base, "unix:gid"));
+            String setup = "mount -t tmpfs -o size=" + STORE_MB + "m,mode=0700,uid=" + uid + ",gid=" + gid + " tmpfs '" + tmpfsDir + "'"
+                    + " && modprobe zram"
+                    + " && DEV=$(zramctl --find --size " + STORE_MB + "M --algorithm " + algorithm + ")"
+                    + " && mkfs.ext4 -q -O ^has_journal -m 0 -E lazy_itable_init=0 $DEV"
+                    + " && mount -o noatime,discard $DEV '" + zramDir + "'"
+                    + " && chown " + uid + ":" + gid + " '" + zramDir + "'"
+                    + " && echo $DEV > '" + devFile + "'";
+            if (ElevatedInstaller.runElevatedBash(setup) != 0) {
+                System.err.println("Failed to mount the benchmark stores");
+                return 1;
+            }
+
+            String zramDev = Files.readString(devFile).trim();
+            Path mmStat = Path.of("/sys/block").resolve(Path.of(zramDev).getFileName()).resolve("mm_stat");
+
+            List<Result> results = new ArrayList<>();
+            long shmemBefore = memInfoKb("Shmem") * 1024L;
+            results.add(writeWorlds("tmpfs", tmpfsDir, sample, worlds, () -> memInfoKb("Shmem") * 1024L - shmemBefore));
+            results.add(writeWorlds("zram (" + algorithm + ")", zramDir, sample, worlds, () -> mmStat(mmStat, 2)));
+
+            System.out.printf("%n%-16s %10s %12s %12s%n", "backend", "MB/s", "data MB", "RAM MB");
+            for (Result r : results) {
+                double seconds = r.nanos / 1e9;
+                System.out.printf("%-16s %10.1f %12.1f %12.1f%n", r.backend, r.bytes / 1048576.0 / seconds,
+                        r.bytes / 1048576.0, r.ramBytes / 1048576.0);
+            }
+            long orig = mmStat(mmStat, 0);
+            long compr = mmStat(mmStat, 1);
+            if (compr > 0) System.out.printf("zram compression ratio: %.2f%n", (double) orig / compr);
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Storage benchmark failed: " + e.getMessage());
+            return 1;
+        } finally {
+            teardown(tmpfsDir, zramDir, devFile, base);
+        }
+    }
+
+    private interface RamProbe {
+        long bytes() throws IOException;
+    }
+
+    private static Result writeWorlds(String backend, Path dir, List<SampleFile> sample, int worlds, RamProbe ram)
+            throws IOException, InterruptedException {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int w = 0; w < worlds; w++) {
+            Path world = dir.resolve("Random Speedrun #" + w);
+            for (SampleFile f : sample) {
+                Path target = world.resolve(f.path);
+                Files.createDirectories(target.getParent());
+                Files.write(target, f.data);
+                bytes += f.data.length;
+            }
+        }
+        // zram only holds the data once the page cache was written back to it
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        long nanos = System.nanoTime() - start;
+        return new Result(backend, bytes, nanos, ram.bytes());
+    }
+
+    // Prefers a real world, so the compression numbers match what the instances actually write
+    private static Path findSampleWorld() {
+        Path lingle = Path.of(System.getProperty("user.home")).resolve("Lingle");
+        for (int k = 1; k <= LingleState.instanceCount; k++) {
+            Path dir = lingle.resolve(String.valueOf(k));
+            if (!Files.isDirectory(dir)) continue;
+            for (WorldIndex.Entry e : WorldIndex.current(dir).newest(1, WorldIndex.Kind.WORLD)) {
+                Path world = dir.resolve(e.name);
+                if (Files.isDirectory(world.resolve("region"))) return world;
+            }
+        }
+        return null;
+    }
+
+    private static List<SampleFile> readWorld(Path world) throws IOException {
+        List<SampleFile> files = new ArrayList<>();
+        Files.walkFileTree(world, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!file.getFileName().toString().equals("session.lock")) {
+                    files.add(new SampleFile(world.relativize(file).toString(), Files.readAllBytes(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    // Region files laid out like Anvil: a location table and deflated chunks in 4 KiB sectors
+    static List<SampleFile> syntheticWorld() {
+        Random random = new Random(42);
+        List<SampleFile> files = new ArrayList<>();
+        String[] dims = {"region", "DIM-1/region"};
+        for (String dim : dims) {
+            for (int r = 0; r < 4; r++) {
+                files.add(new SampleFile(dim + "/r." + (r % 2) + "." + (r / 2) + ".mca", syntheticRegion(random, 400)));
+            }
+        }
+        byte[] levelDat = new byte[4096];
+        random.nextBytes(levelDat);
+        files.add(new SampleFile("level.dat", levelDat));
+        return files;
+    }
+
+    static byte[] syntheticRegion(Random random, int chunks) {
+        ByteBuffer out = ByteBuffer.allocate(8192 + chunks * 5 * 4096);
+        ByteBuffer header = ByteBuffer.allocate(8192);
+        int sector = 2;
+        byte[] raw = new byte[48 * 1024];
+        byte[] deflated = new byte[raw.length * 2];
+        for (int c = 0; c < chunks; c++) {
+            // Long runs of the same block with some noise compress about like real terrain
+            int i = 0;
+            while (i < raw.length) {
+                int run = 1 + random.nextInt(64);
+                byte b = (byte) random.nextInt(24);
+                for (int j = 0; j < run && i < raw.length; j++) raw[i++] = b;
+            }
+            Deflater deflater = new Deflater();
+            deflater.setInput(raw);
+            deflater.finish();
+            int len = deflater.deflate(deflated);
+            deflater.end();
+
+            int sectors = (len + 5 + 4095) / 4096;
+            header.putInt(c * 4, (sector << 8) | sectors);
+            out.position(sector * 4096);
+            out.putInt(len + 1).put((byte) 2).put(deflated, 0, len);
+            sector += sectors;
+        }
+        out.position(0);
+        out.put(header.array());
+        byte[] region = new byte[sector * 4096];
+        System.arraycopy(out.array(), 0, region, 0, region.length);
+        return region;
+    }
+
+    private static void teardown(Path tmpfsDir, Path zramDir, Path devFile, Path base) {
+        try {
+            String dev = Files.exists(devFile) ? Files.readString(devFile).trim() : "";
+            String cmd = "umount '" + tmpfsDir + "' 2>/dev/null; umount '" + zramDir + "' 2>/dev/null; "
+                    + (dev.isEmpty() ? "" : "zramctl --reset " + dev + "; ")
+                    + "rm -rf '" + base + "'";
+            ElevatedInstaller.runElevatedBash(cmd);
+        } catch (Exception ignored) {}
+    }
+
+    // Fields of /sys/block/zramN/mm_stat: orig_data_size compr_data_size mem_used_total ...
+    private static long mmStat(Path mmStat, int field) throws IOException {
+        String[] f = Files.readString(mmStat).trim().split("\\s+");
+        return Long.parseLong(f[field]);
+    }
+
+    static long memInfoKb(String key) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/meminfo"))) {
+                if (line.startsWith(key + ":")) return Long.parseLong(line.replaceAll("\\D+", ""));
+            }
+        } catch (IOException | NumberFormatException ignored) {}
+        return 0;
+    }
+}
@@ -0,0 +1,267 @@
+package flammable.bunny.core;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the inner zip of the newest worlds of every instance ready in
+// ~/.local/share/lingle/submission-cache so packaging a submission mostly copies finished entries.
+// A watcher on ~/speedrunigt and the saves folders schedules a refresh; each cached zip is keyed by
+// a hash of its world's file list, sizes and mtimes and rebuilt once that no longer matches.
+public final class SubmissionCache {
+
+    private static final long DEBOUNCE_MS = 2000;
+    private static final long RESCAN_SECONDS = 60;
+    // Worlds written to this recently are still being played and would be rebuilt over and over
+    private static final long QUIET_MS = 5000;
+
+    private static ScheduledExecutorService scheduler = null;
+    private static ScheduledFuture<?> pendingRefresh = null;
+    private static WatchService watcher = null;
+    private static Thread watchThread = null;
+
+    private SubmissionCache() {}
+
+    public static Path cacheDir() {
+        return Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/submission-cache");
+    }
+
+    public static synchronized void start() {
+        stop();
+        if (!LingleConfig.current().submission().cacheEnabled()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(() -> {
+                IoPriority.idleForCurrentThread();
+                // Zipping is CPU bound, so the idle I/O class alone would not keep it away from the game
+                IoPriority.lowestCpuForCurrentThread();
+                r.run();
+            }, "lingle-submission-cache");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(SubmissionCache::refresh, 0, RESCAN_SECONDS, TimeUnit.SECONDS);
+
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            Path srigt = Path.of(System.getProperty("user.home")).resolve("speedrunigt");
+            if (Files.isDirectory(srigt)) srigt.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            for (Path saves : savesDirs()) {
+                saves.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException e) {
+            LingleLogger.logError("Submission cache: failed to watch saves folders", e);
+        }
+        WatchService ws = watcher;
+        watchThread = new Thread(() -> watchLoop(ws), "lingle-submission-cache-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public static synchronized void stop() {
+        if (watcher != null) {
+            try { watcher.close(); } catch (IOException ignored) {}
+        }
+        watcher = null;
+        watchThread = null;
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+        pendingRefresh = null;
+    }
+
+    private static void watchLoop(WatchService ws) {
+        if (ws == null) return;
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                key.pollEvents();
+                key.reset();
+                scheduleRefresh();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    // Bursts of events, e.g. SeedQueue creating a batch of worlds, end up as one refresh
+    private static synchronized void scheduleRefresh() {
+        if (scheduler == null) return;
+        if (pendingRefresh != null) pendingRefresh.cancel(false);
+        pendingRefresh = scheduler.schedule(SubmissionCache::refresh, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // The cached inner zip for a world, or null when there is none or the world changed since
+    public static byte[] lookup(Path world) {
+        try {
+            Path zip = cacheFile(world, ".zip");
+            Path meta = cacheFile(world, ".meta");
+            if (!Files.exists(zip) || !Files.exists(meta)) return null;
+            if (!Files.readString(meta).trim().equals(fingerprint(world))) return null;
+            return Files.readAllBytes(zip);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void refresh() {
+        try {
+            Files.createDirectories(cacheDir());
+            Set<String> wanted = new HashSet<>();
+            int rebuilt = 0;
+            long now = System.currentTimeMillis();
+            for (Path world : wantedWorlds()) {
+                String base = key(world);
+                wanted.add(base + ".zip");
+                wanted.add(base + ".meta");
+                // An open world keeps changing; it is picked up once the instance leaves it
+                if (isOpen(world)) continue;
+                Scan scan = scan(world);
+                // The world folder's own mtime only changes when entries are added or removed
+                if (now - scan.newestMtime() < QUIET_MS) continue;
+
+                String fingerprint = scan.fingerprint();
+                Path meta = cacheFile(world, ".meta");
+                if (Files.exists(meta) && Files.readString(meta).trim().equals(fingerprint)) continue;
+
+                byte[] zip = PackagesforRunSubmissionZipper.zipWorld(world);
+                // The world may have changed while it was compressed; the next pass will notice
+                if (!fingerprint.equals(fingerprint(world))) continue;
+                writeAtomically(cacheFile(world, ".zip"), zip);
+                writeAtomically(meta, fingerprint.getBytes(StandardCharsets.UTF_8));
+                rebuilt++;
+            }
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(cacheDir())) {
+                for (Path p : ds) {
+                    if (!wanted.contains(p.getFileName().toString())) Files.deleteIfExists(p);
+                }
+            }
+            if (rebuilt > 0) LingleLogger.logInfo("Submission cache: rebuilt " + rebuilt + " world zip(s)");
+        } catch (IOException e) {
+            LingleLogger.logError("Submission cache refresh failed", e);
+        }
+    }
+
+    // The newest worlds of every saves folder cover the run world, Last5 and Background
+    private static List<Path> wantedWorlds() {
+        List<Path> worlds = new ArrayList<>();
+        int n = Math.max(1, LingleConfig.current().submission().cacheWorlds());
+        for (Path saves : savesDirs()) {
+            WorldIndex index = WorldIndex.current(saves);
+            index.byRecentActivity(null).stream()
+                    .map(e -> index.dir().resolve(e.name))
+                    .filter(Files::isDirectory)
+                    .limit(n)
+                    .forEach(worlds::add);
+        }
+        return worlds;
+    }
+
+    private static Set<Path> savesDirs() {
+        Set<Path> dirs = new LinkedHashSet<>();
+        Path home = Path.of(System.getProperty("user.home"));
+        Path instances = home.resolve(".local/share/PrismLauncher/instances");
+        for (String inst : LingleConfig.current().linkedInstances()) addDir(dirs, instances.resolve(inst).resolve("minecraft/saves"));
+        try {
+            Path latest = home.resolve("speedrunigt").resolve("latest_world.json");
+            if (Files.exists(latest)) {
+                addDir(dirs, Path.of(new JSONObject(Files.readString(latest)).getString("world_path")).getParent());
+            }
+        } catch (Exception ignored) {}
+        return dirs;
+    }
+
+    private static void addDir(Set<Path> dirs, Path dir) {
+        if (dir == null || !Files.isDirectory(dir)) return;
+        try {
+            dirs.add(dir.toRealPath());
+        } catch (IOException ignored) {}
+    }
+
+    private record Scan(String fingerprint, long newestMtime) {}
+
+    // session.lock is held by the game for as long as the world is loaded
+    private static boolean isOpen(Path world) {
+        Path lock = world.resolve("session.lock");
+        if (!Files.exists(lock)) return false;
+        try (FileChannel ch = FileChannel.open(lock, StandardOpenOption.WRITE)) {
+            FileLock l = ch.tryLock();
+            if (l == null) return true;
+            l.release();
+            return false;
+        } catch (OverlappingFileLockException | IOException e) {
+            return true;
+        }
+    }
+
+    static String fingerprint(Path world) throws IOException {
+        return scan(world).fingerprint();
+    }
+
+    // Hash of every file's path, size and mtime, plus the deflate level the zip was built with.
+    // Reading the contents would cost as much as zipping.
+    private static Scan scan(Path world) throws IOException {
+        TreeMap<String, String> files = new TreeMap<>();
+        long[] newest = {0};
+        Files.walkFileTree(world, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                long mtime = attrs.lastModifiedTime().toMillis();
+                files.put(world.relativize(file).toString(), attrs.size() + ":" + mtime);
+                newest[0] = Math.max(newest[0], mtime);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        MessageDigest sha = sha256();
+        sha.update(("level\t" + CompressionPolicy.level() + "\n").getBytes(StandardCharsets.UTF_8));
+        files.forEach((k, v) -> sha.update((k + "\t" + v + "\n").getBytes(StandardCharsets.UTF_8)));
+        return new Scan(HexFormat.of().formatHex(sha.digest()), newest[0]);
+    }
+
+    private static Path cacheFile(Path world, String suffix) {
+        return cacheDir().resolve(key(world) + suffix);
+    }
+
+    private static String key(Path world) {
+        Path p = world;
+        try { p = world.toRealPath(); } catch (IOException ignored) {}
+        return HexFormat.of().formatHex(sha256().digest(p.toString().getBytes(StandardCharsets.UTF_8))).substring(0, 32);
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, data);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class TmpfsPressureReclaimer {
+
+    private static final long SAMPLE_INTERVAL_MS = 100;
+    // How long to wait before looking again when nothing could be evicted and nothing changed
+    private static final long EXHAUSTED_RETRY_MS = 5000;
+
+    private static ScheduledExecutorService scheduler = null;
+    private static FileStore store = null;
+    private static boolean underPressure = false;
+    // Only touched from the sampling thread. The candidates are reused between samples until the
+    // slot folders change; once they run out the sampler backs off instead of rescanning every 100 ms.
+    private static Deque<Candidate> candidates = null;
+    private static long slotsSignature = 0;
+    private static long exhaustedAt = 0;
+    private static int exhaustedUsed = 0;
+    private static boolean exhaustedLogged = false;
+
+    private TmpfsPressureReclaimer() {}
+
+    private record Candidate(Path path, long mtime) {}
+
+    public static synchronized void start() {
+        stop();
+        if (!LingleConfig.current().tmpfs().enabled()) return;
+
+        Path lingle = lingleDir();
+        if (!Files.isDirectory(lingle)) return;
+        // Without the RAM mount ~/Lingle is on the home disk, whose usage says nothing about RAM
+        if (TmpfsSizer.ramMountType() == null) {
+            LingleLogger.logInfo("~/Lingle is not a tmpfs or zram mount, not watching its usage");
+            return;
+        }
+        try {
+            store = Files.getFileStore(lingle);
+        } catch (IOException e) {
+            LingleLogger.logError("Failed to open the ~/Lingle file store", e);
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lingle-tmpfs-pressure");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(TmpfsPressureReclaimer::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+        store = null;
+        underPressure = false;
+        candidates = null;
+        exhaustedAt = 0;
+    }
+
+    private static Path lingleDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle");
+    }
+
+    private static int usedPercent(FileStore fs) throws IOException {
+        long total = fs.getTotalSpace();
+        if (total <= 0) return 0;
+        return (int) ((total - fs.getUsableSpace()) * 100 / total);
+    }
+
+    private static void sample() {
+        FileStore fs = store;
+        if (fs == null) return;
+        try {
+            LingleConfig.Tmpfs cfg = LingleConfig.current().tmpfs();
+            int high = Math.min(99, Math.max(1, cfg.highWatermark()));
+            int low = Math.min(high, Math.max(0, cfg.lowWatermark()));
+
+            int used = usedPercent(fs);
+            if (used < high) {
+                underPressure = false;
+                candidates = null;
+                exhaustedAt = 0;
+                exhaustedLogged = false;
+                return;
+            }
+            if (!underPressure) {
+                underPressure = true;
+                LingleLogger.logInfo("tmpfs usage at " + used + "%, evicting old worlds down to " + low + "%");
+            }
+
+            // Worlds created or deleted change their slot folder's mtime
+            long signature = slotsSignature();
+            if (exhaustedAt != 0) {
+                long now = System.currentTimeMillis();
+                if (signature == slotsSignature && used >= exhaustedUsed && now - exhaustedAt < EXHAUSTED_RETRY_MS) return;
+                exhaustedAt = 0;
+                candidates = null;
+            }
+            if (signature != slotsSignature) candidates = null;
+            slotsSignature = signature;
+
+            // Renamed worlds still take up RAM until they are unlinked, so empty the trash first
+            WorldReclaimer.drainLingleTrash();
+            if (usedPercent(fs) <= low) return;
+
+            if (candidates == null) candidates = new ArrayDeque<>(evictionCandidates());
+            while (!candidates.isEmpty()) {
+                Candidate c = candidates.poll();
+                // The list may be a few samples old, so the world could have been opened since
+                if (WorldBopperManager.isInUse(c.path())) continue;
+                WorldReclaimer.discardNow(c.path());
+                if (usedPercent(fs) <= low) return;
+            }
+            exhaustedAt = System.currentTimeMillis();
+            exhaustedUsed = usedPercent(fs);
+            if (!exhaustedLogged) {
+                exhaustedLogged = true;
+                LingleLogger.logInfo("tmpfs usage at " + exhaustedUsed + "%, no more worlds can be evicted for now");
+            }
+        } catch (Exception ignored) {}
+    }
+
+    private static long slotsSignature() {
+        long signature = 0;
+        int max = Math.max(0, LingleConfig.current().instanceCount());
+        for (int i = 1; i <= max; i++) {
+            try {
+                signature = signature * 31 + Files.getLastModifiedTime(lingleDir().resolve(String.valueOf(i))).toMillis();
+            } catch (IOException ignored) {}
+        }
+        return signature;
+    }
+
+    // Every world across all instances, oldest first, except Z* practice maps, hidden entries,
+    // the newest world of each instance, which is the one being played, open worlds and worlds the
+    // WorldBopper keep rules protect or that no rule covers.
+    private static List<Candidate> evictionCandidates() {
+        List<Candidate> all = new ArrayList<>();
+        int max = Math.max(0, LingleConfig.current().instanceCount());
+        for (int i = 1; i <= max; i++) {
+            Path ldir = lingleDir().resolve(String.valueOf(i));
+            if (!Files.isDirectory(ldir)) continue;
+
+            List<WorldIndex.Entry> worlds = WorldIndex.current(ldir).byRecentActivity(WorldIndex.Kind.WORLD);
+            for (WorldIndex.Entry e : worlds.subList(Math.min(1, worlds.size()), worlds.size())) {
+                Path world = ldir.resolve(e.name);
+                if (WorldBopperManager.isInUse(world) || !WorldBopperManager.shouldDeleteWorld(world)) continue;
+                all.add(new Candidate(world, e.mtime()));
+            }
+        }
+        all.sort(Comparator.comparingLong(Candidate::mtime));
+        return all;
+    }
+}
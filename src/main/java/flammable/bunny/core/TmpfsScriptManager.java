@@ -18,13 +18,72 @@ public class TmpfsScriptManager {
         Path enableSh = scriptsDir.resolve("tmpfsenable.sh");
         Path disableSh = scriptsDir.resolve("tmpfsdisable.sh");
 
-        Files.writeString(enableSh, enableScript(), StandardCharsets.UTF_8);
+        String size = TmpfsSizer.effectiveSize();
+        String enable = "zram".equals(LingleState.tmpfsBackend)
+                ? zramEnableScript(TmpfsSizer.effectiveSizeMb(), LingleState.zramAlgorithm)
+                : enableScript(size, hugeOption());
+        Files.writeString(enableSh, enable, StandardCharsets.UTF_8);
         enableSh.toFile().setExecutable(true);
         Files.writeString(disableSh, disableScript(), StandardCharsets.UTF_8);
         disableSh.toFile().setExecutable(true);
     }
 
-    private static String enableScript() {
+    // zram devices are gone after every reboot, which leaves ~/Lingle a plain folder on the home
+    // disk, so the zram store is set up again on launch. A tmpfs comes back from fstab; when it is
+    // missing anyway the UI asks before mounting over whatever is in the folder (see needsMount).
+    public static void ensureMounted() {
+        if (!LingleState.enabled || !"zram".equals(LingleState.tmpfsBackend) || TmpfsSizer.ramMountType() != null) return;
+        LingleLogger.logInfo("~/Lingle is not mounted, setting up the zram store again");
+        mountAgain();
+    }
+
+    public static boolean needsMount() {
+        return LingleState.enabled && !"zram".equals(LingleState.tmpfsBackend) && TmpfsSizer.ramMountType() == null;
+    }
+
+    // Runs the enable script and then the startup script, since the slot folders it created are
+    // hidden under the new mount. True when ~/Lingle is mounted afterwards.
+    public static boolean mountAgain() {
+        Path scripts = Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/scripts");
+        try {
+            if (runScript(scripts.resolve("tmpfsenable.sh")) != 0 || TmpfsSizer.ramMountType() == null) {
+                LingleLogger.logError("Mounting ~/Lingle failed, worlds will be stored on disk");
+                return false;
+            }
+            // The slot folders that were watched are hidden under the mount now
+            WorldIndex.unwatchAll();
+            Path startup = scripts.resolve("link_practice_maps.sh");
+            if (Files.exists(startup)) runScript(startup);
+            LingleLogger.logSuccess("~/Lingle mounted again");
+            return true;
+        } catch (IOException e) {
+            LingleLogger.logError("Mounting ~/Lingle failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static int runScript(Path script) throws IOException, InterruptedException {
+        LingleLogger.logCommand("/bin/bash " + script);
+        Process p = new ProcessBuilder("/bin/bash", script.toString()).redirectErrorStream(true).start();
+        try (var reader = new java.io.BufferedReader(new java.io.InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) LingleLogger.logOutput(line);
+        }
+        return p.waitFor();
+    }
+
+    // Extra tmpfs mount option for transparent huge pages, empty when they stay off
+    static String hugeOption() {
+        String mode = LingleState.tmpfsHugePages;
+        return switch (mode) {
+            case "within_size", "advise", "always" -> ",huge=" + mode;
+            default -> "";
+        };
+    }
+
+    private static String enableScript(String size, String huge) {
         return """
                 #!/bin/bash
                 set -euo pipefail
@@ -34,22 +93,61 @@ public class TmpfsScriptManager {
                 USER_UID="$(id -u "${USER_NAME}")"
                 USER_GID="$(id -g "${USER_NAME}")"
                 TARGET="${USER_HOME}/Lingle"
-                SIZE="4g"
+                SIZE="%s"
+                HUGE="%s"
 
                 COMMENT="# LINGLE tmpfs"
-                LINE="tmpfs ${TARGET} tmpfs defaults,size=${SIZE},uid=${USER_UID},gid=${USER_GID},mode=0700 0 0"
+                LINE="tmpfs ${TARGET} tmpfs defaults,size=${SIZE}${HUGE},uid=${USER_UID},gid=${USER_GID},mode=0700 0 0"
 
-                # Add entry if not exists (using pkexec for both operations)
-                if ! grep -qF "${LINE}" /etc/fstab; then
+                # Add entry if not exists, otherwise bring its options up to date (using pkexec)
+                if ! awk -v t="${TARGET}" '$1 == "tmpfs" && $2 == t { found = 1 } END { exit !found }' /etc/fstab; then
                   echo "${COMMENT}" | pkexec tee -a /etc/fstab >/dev/null
                   echo "${LINE}" | pkexec tee -a /etc/fstab >/dev/null
+                elif ! grep -qF "${LINE}" /etc/fstab; then
+                  pkexec sed -i "\\#^tmpfs ${TARGET} tmpfs #c ${LINE}" /etc/fstab
                 fi
 
                 # Mount with pkexec
                 if ! mountpoint -q "${TARGET}"; then
-                  pkexec mount -t tmpfs -o size=${SIZE},uid=${USER_UID},gid=${USER_GID},mode=700 tmpfs "${TARGET}"
+                  pkexec mount -t tmpfs -o size=${SIZE}${HUGE},uid=${USER_UID},gid=${USER_GID},mode=700 tmpfs "${TARGET}"
                 fi
-                """;
+                """.formatted(size, huge);
+    }
+
+    // The world store on a compressed zram block device instead of tmpfs. zram devices do not
+    // survive a reboot, so there is no fstab entry and ensureMounted runs this again on launch.
+    // The device is no larger than its memory cap: region files are zlib data already and barely
+    // compress, so a bigger device would hit mem_limit and fail writes while the filesystem still
+    // looked half empty to TmpfsPressureReclaimer.
+    private static String zramEnableScript(int sizeMb, String algorithm) {
+        return """
+                #!/bin/bash
+                set -euo pipefail
+
+                USER_NAME="$(logname 2>/dev/null || id -un)"
+                USER_HOME="$(getent passwd "${USER_NAME}" | cut -d: -f6)"
+                USER_UID="$(id -u "${USER_NAME}")"
+                USER_GID="$(id -g "${USER_NAME}")"
+                TARGET="${USER_HOME}/Lingle"
+                SIZE="%dM"
+                ALGORITHM="%s"
+
+                mkdir -p "${TARGET}"
+
+                # One pkexec call for the whole setup; discard returns freed blocks to RAM right away
+                if ! mountpoint -q "${TARGET}"; then
+                  pkexec bash -c '
+                    set -euo pipefail
+                    modprobe zram
+                    DEV="$(zramctl --find --size "$2" --algorithm "$3")"
+                    echo "$4" > "/sys/block/$(basename "${DEV}")/mem_limit"
+                    mkfs.ext4 -q -O ^has_journal -m 0 -E lazy_itable_init=0 "${DEV}"
+                    mount -o noatime,discard "${DEV}" "$1"
+                    chown "$5:$6" "$1"
+                    chmod 0700 "$1"
+                  ' _ "${TARGET}" "${SIZE}" "${ALGORITHM}" "${SIZE}" "${USER_UID}" "${USER_GID}"
+                fi
+                """.formatted(sizeMb, algorithm);
     }
 
     private static String disableScript() {
@@ -62,18 +160,22 @@ public class TmpfsScriptManager {
                 USER_UID="$(id -u "${USER_NAME}")"
                 USER_GID="$(id -g "${USER_NAME}")"
                 TARGET="${USER_HOME}/Lingle"
-                SIZE="4g"
 
                 COMMENT="# LINGLE tmpfs"
-                LINE="tmpfs ${TARGET} tmpfs defaults,size=${SIZE},uid=${USER_UID},gid=${USER_GID},mode=0700 0 0"
 
                 if mountpoint -q "${TARGET}"; then
+                  SOURCE="$(findmnt -no SOURCE "${TARGET}")"
                   pkexec umount "${TARGET}"
+                  # A zram backed store also gives its device back
+                  case "${SOURCE}" in
+                    /dev/zram*) pkexec zramctl --reset "${SOURCE}" ;;
+                  esac
                 fi
 
-                if grep -qF "${LINE}" /etc/fstab; then
+                # Match the entry by mount point so any size is removed
+                if awk -v t="${TARGET}" '$1 == "tmpfs" && $2 == t { found = 1 } END { exit !found }' /etc/fstab; then
                   pkexec sed -i "/${COMMENT}/d" /etc/fstab
-                  pkexec sed -i "\\|${LINE}|d" /etc/fstab
+                  pkexec sed -i "\\#^tmpfs ${TARGET} tmpfs #d" /etc/fstab
                 fi
                 """;
     }
@@ -0,0 +1,204 @@
+package flammable.bunny.core;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Picks the size of the ~/Lingle tmpfs from the machine's RAM and what the instances actually
+// store, and resizes a mounted tmpfs in place with a remount.
+public final class TmpfsSizer {
+
+    private static final long MIB = 1024L * 1024L;
+    private static final int MIN_SIZE_MB = 1024;
+    // Worlds per instance that survive ADW, plus the one being played
+    private static final int WORLDS_PER_INSTANCE = 7;
+    // Only a guess for before any world exists; a fresh speedrun world is a few dozen MB
+    private static final long DEFAULT_WORLD_BYTES = 64 * MIB;
+
+    private TmpfsSizer() {}
+
+    // tmpfsSizeMb of 0 means auto. The auto size is the one stored in config, so writing the scripts
+    // never walks the worlds; it is recomputed when the user applies a size and in the background
+    // after launch.
+    public static int effectiveSizeMb() {
+        if (LingleState.tmpfsSizeMb > 0) return LingleState.tmpfsSizeMb;
+        return LingleState.tmpfsAutoSizeMb > 0 ? LingleState.tmpfsAutoSizeMb : MIN_SIZE_MB;
+    }
+
+    // Walks the newest worlds, so it is only called off the EDT
+    public static int recomputeAutoSize() {
+        int sizeMb = recommendedSizeMb();
+        storeAutoSize(sizeMb);
+        return sizeMb;
+    }
+
+    public static void refreshAutoSizeInBackground() {
+        if (LingleState.tmpfsSizeMb > 0) return;
+        Thread t = new Thread(() -> {
+            int before = LingleConfig.current().tmpfs().autoSizeMb();
+            if (recomputeAutoSize() == before) return;
+            try {
+                TmpfsScriptManager.ensureScriptsPresent();
+            } catch (IOException e) {
+                LingleLogger.logError("Failed to update the TMPFS scripts", e);
+            }
+        }, "lingle-tmpfs-size");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    private static void storeAutoSize(int sizeMb) {
+        Runnable store = () -> {
+            if (LingleState.tmpfsAutoSizeMb == sizeMb) return;
+            LingleState.tmpfsAutoSizeMb = sizeMb;
+            LingleState.saveState();
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            store.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(store);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            LingleLogger.logError("Saving the TMPFS size failed: " + e.getCause());
+        }
+    }
+
+    public static String effectiveSize() {
+        return effectiveSizeMb() + "m";
+    }
+
+    // Room for every instance's kept worlds at the largest size seen so far with a quarter on top,
+    // but never more than half of RAM so the game JVMs are not starved.
+    public static int recommendedSizeMb() {
+        long memTotal = memInfoBytes("MemTotal");
+        int instances = Math.max(1, LingleConfig.current().instanceCount());
+
+        long need = instances * WORLDS_PER_INSTANCE * peakWorldBytes() + practiceMapBytes(instances);
+        long sizeMb = need * 5 / 4 / MIB;
+        if (memTotal > 0) {
+            long capMb = memTotal / 2 / MIB;
+            if (sizeMb > capMb) {
+                LingleLogger.logInfo("TMPFS: " + sizeMb + " MB wanted but capped to half of RAM (" + capMb + " MB)");
+                sizeMb = capMb;
+            }
+        }
+        return (int) Math.max(MIN_SIZE_MB, sizeMb);
+    }
+
+    static long peakWorldBytes() {
+        Path lingle = lingleDir();
+        long peak = 0;
+        for (int k = 1; k <= LingleConfig.current().instanceCount(); k++) {
+            Path dir = lingle.resolve(String.valueOf(k));
+            if (!Files.isDirectory(dir)) continue;
+            WorldIndex index = WorldIndex.current(dir);
+            for (WorldIndex.Entry e : index.newest(WORLDS_PER_INSTANCE, WorldIndex.Kind.WORLD)) {
+                peak = Math.max(peak, index.sizeOf(e));
+            }
+        }
+        return peak > 0 ? peak : DEFAULT_WORLD_BYTES;
+    }
+
+    // Materialized practice maps take one master plus one copy per instance
+    private static long practiceMapBytes(int instances) {
+        if (!PracticeMapMaterializer.enabled()) return 0;
+        Path master = PracticeMapMaterializer.masterDir();
+        if (!Files.isDirectory(master)) return 0;
+        WorldIndex index = WorldIndex.current(master);
+        long total = 0;
+        for (WorldIndex.Entry e : index.all()) total += index.sizeOf(e);
+        return total * (instances + 1);
+    }
+
+    // Only a tmpfs can be resized in place, so this does not count a zram mount
+    public static boolean isMounted() {
+        return mountedSizeBytes() > 0;
+    }
+
+    // "tmpfs" or "zram" when ~/Lingle is one of Lingle's RAM mounts, null when it is a plain directory
+    public static String ramMountType() {
+        String target = lingleDir().toString();
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/mounts"))) {
+                String[] f = line.split(" ");
+                if (f.length < 3 || !f[1].equals(target)) continue;
+                if (f[2].equals("tmpfs")) return "tmpfs";
+                if (f[0].startsWith("/dev/zram")) return "zram";
+            }
+        } catch (IOException ignored) {}
+        return null;
+    }
+
+    // Size of the tmpfs mounted at ~/Lingle, or 0 when there is none
+    public static long mountedSizeBytes() {
+        Path lingle = lingleDir();
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/mounts"))) {
+                String[] f = line.split(" ");
+                if (f.length < 3 || !f[2].equals("tmpfs") || !f[1].equals(lingle.toString())) continue;
+                return Files.getFileStore(lingle).getTotalSpace();
+            }
+        } catch (IOException ignored) {}
+        return 0;
+    }
+
+    // Grows or shrinks the mounted tmpfs without unmounting it and keeps the fstab entry in step.
+    // The huge page mode is applied the same way.
+    public static void applyLive(int sizeMb) throws IOException {
+        Path lingle = lingleDir();
+        if (!isMounted()) throw new IOException("No tmpfs mounted at " + lingle);
+
+        FileStore store = Files.getFileStore(lingle);
+        long used = store.getTotalSpace() - store.getUsableSpace();
+        if ((long) sizeMb * MIB <= used) {
+            throw new IOException("TMPFS holds " + used / MIB + " MB, cannot shrink it to " + sizeMb + " MB");
+        }
+
+        String target = lingle.toString();
+        String huge = TmpfsScriptManager.hugeOption();
+        // A remount keeps options it is not given, so switching huge pages off has to be spelled out.
+        // Kernels without THP reject the option, but there the tmpfs never had huge pages either.
+        String remountHuge = huge.isEmpty() && Files.isDirectory(Path.of("/sys/kernel/mm/transparent_hugepage"))
+                ? ",huge=never" : huge;
+        String cmd = "mount -o remount,size=" + sizeMb + "m" + remountHuge + " '" + target + "' && "
+                + "sed -i -E '\\#^tmpfs " + target + " tmpfs #s#,huge=[a-z_]+##; "
+                + "s#^(tmpfs " + target + " tmpfs [^ ]*size=)[^, ]+#\\1" + sizeMb + "m" + huge + "#' /etc/fstab";
+        LingleLogger.logCommand(cmd);
+        int ec;
+        try {
+            ec = ElevatedInstaller.runElevatedBash(cmd);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resizing TMPFS", e);
+        }
+        if (ec != 0) throw new IOException("Resizing TMPFS failed (exit code: " + ec + ")");
+        TmpfsScriptManager.ensureScriptsPresent();
+        LingleLogger.logSuccess("TMPFS resized to " + sizeMb + " MB");
+    }
+
+    private static long memInfoBytes(String key) {
+        try {
+            List<String> lines = Files.readAllLines(Path.of("/proc/meminfo"));
+            Pattern p = Pattern.compile("^" + key + ":\\s+(\\d+) kB");
+            for (String line : lines) {
+                Matcher m = p.matcher(line);
+                if (m.find()) return Long.parseLong(m.group(1)) * 1024L;
+            }
+        } catch (IOException | NumberFormatException ignored) {}
+        return 0;
+    }
+
+    private static Path lingleDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle");
+    }
+}
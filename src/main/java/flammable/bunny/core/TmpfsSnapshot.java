@@ -0,0 +1,335 @@
+package flammable.bunny.core;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps an on-disk copy of the parts of ~/Lingle worth surviving a reboot: the newest worlds of
+// every instance, worlds no boppable rule matches, and materialized practice maps. Each pass only
+// copies files whose size or mtime changed since the last one, records their SHA-256 in a
+// manifest and stays under a MB/s budget on an idle I/O priority thread.
+public final class TmpfsSnapshot {
+
+    private static final int BUFFER = 1024 * 1024;
+
+    private static ScheduledExecutorService scheduler = null;
+
+    private TmpfsSnapshot() {}
+
+    public static Path storeDir() {
+        return Path.of(System.getProperty("user.home")).resolve(".local/share/lingle/snapshot");
+    }
+
+    private static Path manifestPath() {
+        return storeDir().resolve("manifest.json");
+    }
+
+    private static Path lingleDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle");
+    }
+
+    // Lives inside the RAM store, so it is gone exactly when the store was set up from scratch
+    private static Path restoredMarker() {
+        return lingleDir().resolve(".lingle-restored");
+    }
+
+    public static synchronized void start() {
+        stop();
+        LingleConfig cfg = LingleConfig.current();
+        if (!cfg.snapshot().enabled() || !cfg.tmpfs().enabled()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lingle-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        // Queued first on the same thread, so no pass prunes the store before the worlds are back
+        if (freshStore()) {
+            scheduler.execute(() -> {
+                IoPriority.idleForCurrentThread();
+                restoreMissing();
+                if (Thread.currentThread().isInterrupted()) return;
+                try {
+                    Files.createFile(restoredMarker());
+                } catch (IOException ignored) {}
+            });
+        }
+        long interval = Math.max(10, cfg.snapshot().intervalSeconds());
+        scheduler.scheduleWithFixedDelay(() -> {
+            IoPriority.idleForCurrentThread();
+            runOnce();
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    public static synchronized void runOnce() {
+        long start = System.nanoTime();
+        try {
+            Path store = storeDir();
+            Files.createDirectories(store);
+            JSONObject old = readManifest();
+            JSONObject next = new JSONObject();
+            // One snapshot for the whole pass, so an edit on the UI thread is not seen half applied
+            LingleConfig cfg = LingleConfig.current();
+            IoThrottle throttle = new IoThrottle(cfg.snapshot().budgetMBps());
+            int copied = 0;
+
+            for (int k = 1; k <= cfg.instanceCount(); k++) {
+                Path slot = lingleDir().resolve(String.valueOf(k));
+                if (!Files.isDirectory(slot)) continue;
+                Set<String> worlds = selectWorlds(slot, cfg.snapshot().worldsPerInstance());
+                for (String world : worlds) {
+                    copied += syncWorld(k + "/" + world, slot.resolve(world), store.resolve(String.valueOf(k)).resolve(world),
+                            old, next, throttle);
+                }
+                pruneStore(store.resolve(String.valueOf(k)), worlds);
+            }
+            pruneSlots(store, cfg.instanceCount());
+            writeManifest(next);
+
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (copied > 0) LingleLogger.logInfo("Snapshot: copied " + copied + " changed file(s) in " + ms + " ms");
+        } catch (IOException e) {
+            LingleLogger.logError("Snapshot pass failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Newest worlds, worlds the user named themselves, and practice maps that are real copies
+    private static Set<String> selectWorlds(Path slot, int newest) {
+        Set<String> worlds = new LinkedHashSet<>();
+        WorldIndex index = WorldIndex.current(slot);
+        for (WorldIndex.Entry e : index.newest(Math.max(0, newest), WorldIndex.Kind.WORLD)) {
+            worlds.add(e.name);
+        }
+        for (WorldIndex.Entry e : index.all()) {
+            Path dir = slot.resolve(e.name);
+            if (Files.isSymbolicLink(dir)) continue;
+            if (e.kind == WorldIndex.Kind.PRACTICE_MAP || LingleState.matchBoppableWorld(e.name) == null) worlds.add(e.name);
+        }
+        return worlds;
+    }
+
+    private static int syncWorld(String key, Path src, Path dst, JSONObject old, JSONObject next, IoThrottle throttle)
+            throws IOException, InterruptedException {
+        int[] copied = {0};
+        try {
+            Files.walkFileTree(src, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String rel = src.relativize(file).toString();
+                    if (rel.equals("session.lock") || !attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+                    String fileKey = key + "/" + rel;
+                    long mtime = attrs.lastModifiedTime().toMillis();
+                    Path target = dst.resolve(rel);
+
+                    JSONObject prev = old.optJSONObject(fileKey);
+                    if (prev != null && prev.optLong("size") == attrs.size() && prev.optLong("mtime") == mtime
+                            && Files.exists(target)) {
+                        next.put(fileKey, prev);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        String sha = copyHashed(file, target, throttle);
+                        // The mtime from before the copy, so a write during the copy is picked up next pass
+                        next.put(fileKey, new JSONObject().put("size", attrs.size()).put("mtime", mtime).put("sha256", sha));
+                        copied[0]++;
+                    } catch (NoSuchFileException ignored) {
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException ignored) {}
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+
+        // Files the game deleted since the last pass
+        if (Files.isDirectory(dst)) {
+            Files.walkFileTree(dst, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!next.has(key + "/" + dst.relativize(file))) Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return copied[0];
+    }
+
+    private static String copyHashed(Path src, Path dst, IoThrottle throttle) throws IOException, InterruptedException {
+        Files.createDirectories(dst.getParent());
+        Path tmp = dst.resolveSibling(dst.getFileName() + ".lingle-tmp");
+        MessageDigest sha = sha256();
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                buf.flip();
+                sha.update(buf.array(), 0, n);
+                while (buf.hasRemaining()) out.write(buf);
+                buf.clear();
+                throttle.spent(n);
+            }
+        }
+        Files.setLastModifiedTime(tmp, Files.getLastModifiedTime(src));
+        Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    // Worlds that left the selection are dropped from the store
+    private static void pruneStore(Path slotStore, Set<String> keep) throws IOException {
+        if (!Files.isDirectory(slotStore)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(slotStore)) {
+            for (Path p : ds) {
+                if (!keep.contains(p.getFileName().toString())) WorldReclaimer.deleteTree(p);
+            }
+        }
+    }
+
+    private static void pruneSlots(Path store, int instanceCount) throws IOException {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(store)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (!name.matches("\\d+")) continue;
+                int slot = Integer.parseInt(name);
+                if (slot < 1 || slot > instanceCount) WorldReclaimer.deleteTree(p);
+            }
+        }
+    }
+
+    // The RAM store is mounted, was not restored into yet and holds no worlds of its own, i.e. it
+    // was just set up after a reboot. Worlds deleted on purpose while the store stays mounted are
+    // not brought back on the next launch.
+    private static boolean freshStore() {
+        if (TmpfsSizer.ramMountType() == null || Files.exists(restoredMarker())) return false;
+        for (int k = 1; k <= LingleConfig.current().instanceCount(); k++) {
+            Path slot = lingleDir().resolve(String.valueOf(k));
+            if (!Files.isDirectory(slot)) continue;
+            for (WorldIndex.Entry e : WorldIndex.current(slot).all()) {
+                if (e.kind == WorldIndex.Kind.WORLD && !Files.isSymbolicLink(slot.resolve(e.name))) {
+                    try {
+                        Files.createFile(restoredMarker());
+                    } catch (IOException ignored) {}
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Copies snapshotted worlds back into slots that lost them, checking every file against the
+    // manifest. Worlds that already exist in tmpfs are never overwritten.
+    public static int restoreMissing() {
+        Path store = storeDir();
+        if (!Files.isDirectory(store) || !Files.isDirectory(lingleDir())) return 0;
+        JSONObject manifest = readManifest();
+        LingleConfig cfg = LingleConfig.current();
+        IoThrottle throttle = new IoThrottle(cfg.snapshot().budgetMBps());
+        int restored = 0;
+        for (int k = 1; k <= cfg.instanceCount(); k++) {
+            Path slotStore = store.resolve(String.valueOf(k));
+            if (!Files.isDirectory(slotStore)) continue;
+            Path slot = lingleDir().resolve(String.valueOf(k));
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(slotStore)) {
+                for (Path world : ds) {
+                    Path target = slot.resolve(world.getFileName().toString());
+                    if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) continue;
+                    if (restoreWorld(k + "/" + world.getFileName(), world, target, manifest, throttle)) restored++;
+                }
+            } catch (IOException e) {
+                LingleLogger.logError("Snapshot restore of slot " + k + " failed", e);
+            }
+            if (Thread.currentThread().isInterrupted()) break;
+        }
+        if (restored > 0) LingleLogger.logSuccess("Snapshot: restored " + restored + " world(s) into ~/Lingle");
+        return restored;
+    }
+
+    private static boolean restoreWorld(String key, Path src, Path target, JSONObject manifest, IoThrottle throttle)
+            throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(".restore-" + target.getFileName() + "-" + System.nanoTime());
+        Set<String> bad = new HashSet<>();
+        Files.walkFileTree(src, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String rel = src.relativize(file).toString();
+                if (rel.endsWith(".lingle-tmp")) return FileVisitResult.CONTINUE;
+                Path out = tmp.resolve(rel);
+                Files.createDirectories(out.getParent());
+                JSONObject entry = manifest.optJSONObject(key + "/" + rel);
+                String sha;
+                try {
+                    sha = copyHashed(file, out, throttle);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return FileVisitResult.TERMINATE;
+                }
+                if (entry != null && !entry.optString("sha256").equals(sha)) bad.add(rel);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (Thread.currentThread().isInterrupted()) {
+            WorldReclaimer.deleteTree(tmp);
+            return false;
+        }
+        if (!bad.isEmpty()) {
+            LingleLogger.logError("Snapshot of " + key + " is damaged (" + String.join(", ", bad) + "), not restoring it");
+            WorldReclaimer.deleteTree(tmp);
+            return false;
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    private static JSONObject readManifest() {
+        try {
+            Path manifest = manifestPath();
+            if (Files.exists(manifest)) return new JSONObject(Files.readString(manifest));
+        } catch (Exception ignored) {}
+        return new JSONObject();
+    }
+
+    private static void writeManifest(JSONObject manifest) throws IOException {
+        Path path = manifestPath();
+        Path tmp = path.resolveSibling("manifest.json.tmp");
+        Files.writeString(tmp, manifest.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -9,7 +9,8 @@ public class WorldBopperConfig {
         REACHED_FORTRESS("Reached Fortress"),
         REACHED_STRONGHOLD("Reached Stronghold"),
         REACHED_END("Reached End"),
-        WORLD_SIZE("World size (MB)");
+        WORLD_SIZE("World size (MB)"),
+        NETHER_CHUNKS("Nether chunks generated");
 
         private final String displayName;
 
@@ -40,23 +41,34 @@ public class WorldBopperConfig {
         public String prefix;
         public KeepCondition condition;
         public int minSizeMB;
+        public int minChunks;
 
         public KeepWorldInfo() {
             this.prefix = "";
             this.condition = KeepCondition.ALWAYS_DELETE;
             this.minSizeMB = 10;
+            this.minChunks = 100;
         }
 
         public KeepWorldInfo(String prefix, KeepCondition condition) {
             this.prefix = prefix;
             this.condition = condition;
             this.minSizeMB = 10;
+            this.minChunks = 100;
         }
 
         public KeepWorldInfo(String prefix, KeepCondition condition, int minSizeMB) {
             this.prefix = prefix;
             this.condition = condition;
             this.minSizeMB = minSizeMB;
+            this.minChunks = 100;
+        }
+
+        public KeepWorldInfo(String prefix, KeepCondition condition, int minSizeMB, int minChunks) {
+            this.prefix = prefix;
+            this.condition = condition;
+            this.minSizeMB = minSizeMB;
+            this.minChunks = minChunks;
         }
     }
 }
@@ -4,181 +4,229 @@ import flammable.bunny.core.WorldBopperConfig.KeepWorldInfo;
 import flammable.bunny.core.WorldBopperConfig.KeepCondition;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.*;
-import java.util.Comparator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class WorldBopperManager {
 
-    public static void runOnce() {
-        if (!LingleState.worldBopperEnabled) return;
-        if (LingleState.WorldbopperSelectedInstances.isEmpty()) return;
+    // Worlds touched this recently may still be loading or generating
+    private static final long RECENT_WRITE_MS = 60_000;
+    private static final long BACKLOG_DELAY_MS = 1000;
+
+    private static ScheduledExecutorService scheduler = null;
+
+    public static synchronized void startDaemon() {
+        stopDaemon();
+        if (!LingleConfig.current().worldBopper().enabled()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lingle-worldbopper");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        // One queue per instance directory, owned by this daemon's thread so a restart starts over
+        ScheduledExecutorService owner = scheduler;
+        Map<Path, Deque<Path>> pending = new HashMap<>();
+        scheduler.schedule(() -> tick(owner, pending), 0, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopDaemon() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    // Called when config.json changed outside Lingle. Every tick reads the current snapshot and the
+    // rules are recompiled on load, so new intervals, instances and prefixes apply from the next
+    // tick; only switching WorldBopper on or off touches the daemon.
+    public static synchronized void reconfigure(LingleConfig before, LingleConfig after) {
+        boolean was = before.worldBopper().enabled();
+        boolean now = after.worldBopper().enabled();
+        if (was && !now) stopDaemon();
+        else if (!was && now) startDaemon();
+    }
 
+    // Works through the pending worlds of every instance in parallel until the tick budget is spent.
+    // A backlog is picked up again shortly after; once it is empty the next pass waits for the
+    // configured interval.
+    private static void tick(ScheduledExecutorService owner, Map<Path, Deque<Path>> pending) {
+        LingleConfig.WorldBopper cfg = LingleConfig.current().worldBopper();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cfg.tickBudgetMs());
         try {
-            Path home = Path.of(System.getProperty("user.home"));
-            Path instances = home.resolve(".local/share/PrismLauncher/instances");
-
-            if (Files.isDirectory(instances)) {
-                try (DirectoryStream<Path> insts = Files.newDirectoryStream(instances)) {
-                    for (Path inst : insts) {
-                        String instName = inst.getFileName().toString();
-                        if (!LingleState.WorldbopperSelectedInstances.contains(instName)) continue;
-
-                        Path saves = inst.resolve("minecraft").resolve("saves");
-                        cleanDir(saves);
-                    }
+            if (pending.isEmpty()) {
+                for (Path dir : targetDirs()) {
+                    Deque<Path> queue = new ArrayDeque<>();
+                    for (WorldIndex.Entry e : WorldIndex.current(dir).all()) queue.add(dir.resolve(e.name));
+                    if (!queue.isEmpty()) pending.put(dir, queue);
                 }
             }
-
-            if (LingleState.enabled) {
-                int max = Math.max(1, LingleState.instanceCount);
-                for (int i = 1; i <= max; i++) {
-                    Path ldir = home.resolve("Lingle").resolve(String.valueOf(i));
-                    cleanDir(ldir);
+            CleanupPool.forEachDir("WorldBopper", new ArrayList<>(pending.keySet()), dir -> {
+                Deque<Path> queue = pending.get(dir);
+                int removed = 0;
+                while (!queue.isEmpty() && System.nanoTime() < deadline) {
+                    if (bopIfNeeded(queue.poll())) removed++;
                 }
-            }
+                return removed;
+            }, false);
+            pending.values().removeIf(Deque::isEmpty);
+        } catch (Exception ignored) {
+        } finally {
+            long delay = pending.isEmpty()
+                    ? TimeUnit.SECONDS.toMillis(cfg.intervalSeconds())
+                    : BACKLOG_DELAY_MS;
+            reschedule(owner, pending, delay);
+        }
+    }
 
-        } catch (IOException ignored) {}
+    // A tick of a daemon that was stopped or replaced meanwhile ends its chain here
+    private static synchronized void reschedule(ScheduledExecutorService owner, Map<Path, Deque<Path>> pending, long delayMs) {
+        if (owner != scheduler || owner.isShutdown()) return;
+        try {
+            owner.schedule(() -> tick(owner, pending), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {}
     }
 
-    private static void cleanDir(Path dir) throws IOException {
-        if (!Files.isDirectory(dir)) return;
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
-            for (Path p : ds) {
-                if (Files.isDirectory(p) && shouldDeleteWorld(p)) {
-                    deleteDir(p);
+    public static void runOnce() {
+        CleanupPool.forEachDir("WorldBopper", targetDirs(), WorldBopperManager::cleanDir, true);
+    }
+
+    private static List<Path> targetDirs() {
+        Set<Path> dirs = new LinkedHashSet<>();
+        LingleConfig cfg = LingleConfig.current();
+        if (!cfg.worldBopper().enabled()) return new ArrayList<>();
+        if (cfg.worldBopper().instances().isEmpty()) return new ArrayList<>();
+
+        Path home = Path.of(System.getProperty("user.home"));
+        Path instances = home.resolve(".local/share/PrismLauncher/instances");
+
+        if (Files.isDirectory(instances)) {
+            try (DirectoryStream<Path> insts = Files.newDirectoryStream(instances)) {
+                for (Path inst : insts) {
+                    String instName = inst.getFileName().toString();
+                    if (!cfg.worldBopper().instances().contains(instName)) continue;
+
+                    addDir(dirs, inst.resolve("minecraft").resolve("saves"));
                 }
+            } catch (IOException ignored) {}
+        }
+
+        if (cfg.tmpfs().enabled()) {
+            int max = Math.max(1, cfg.instanceCount());
+            for (int i = 1; i <= max; i++) {
+                addDir(dirs, home.resolve("Lingle").resolve(String.valueOf(i)));
             }
         }
+        return new ArrayList<>(dirs);
     }
 
-    private static boolean shouldDeleteWorld(Path worldDir) {
-        String name = worldDir.getFileName().toString();
+    // Linked saves folders point into ~/Lingle, so resolve them to avoid visiting a directory twice
+    private static void addDir(Set<Path> dirs, Path dir) {
+        if (!Files.isDirectory(dir)) return;
+        try {
+            dirs.add(dir.toRealPath());
+        } catch (IOException e) {
+            dirs.add(dir);
+        }
+    }
 
-        KeepWorldInfo matchingConfig = null;
-        for (KeepWorldInfo info : LingleState.boppableWorlds) {
-            if (!info.prefix.isEmpty() && name.startsWith(info.prefix)) {
-                matchingConfig = info;
-                break;
-            }
+    private static int cleanDir(Path dir) {
+        int removed = 0;
+        for (WorldIndex.Entry e : WorldIndex.current(dir).all()) {
+            if (bopIfNeeded(dir.resolve(e.name))) removed++;
         }
+        return removed;
+    }
+
+    private static boolean bopIfNeeded(Path world) {
+        if (!Files.isDirectory(world) || isInUse(world)) return false;
+        if (!shouldDeleteWorld(world)) {
+            // Kept because it met its rule's condition, not because no rule applies to it
+            if (LingleState.matchBoppableWorld(world.getFileName().toString()) != null) KeptWorldEvacuator.submit(world);
+            return false;
+        }
+        WorldReclaimer.discard(world);
+        WorldClassifier.forget(world);
+        return true;
+    }
+
+    // Minecraft holds a lock on session.lock while a world is open, SeedQueue's queued worlds included
+    static boolean isInUse(Path world) {
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(world).toMillis();
+            if (age < RECENT_WRITE_MS) return true;
+        } catch (IOException e) {
+            return true;
+        }
+
+        Path lock = world.resolve("session.lock");
+        if (!Files.exists(lock)) return false;
+        try (FileChannel ch = FileChannel.open(lock, StandardOpenOption.WRITE)) {
+            FileLock l = ch.tryLock();
+            if (l == null) return true;
+            l.release();
+            return false;
+        } catch (OverlappingFileLockException | IOException e) {
+            return true;
+        }
+    }
 
+    // Also decides which worlds TmpfsPressureReclaimer may evict
+    static boolean shouldDeleteWorld(Path worldDir) {
+        String name = worldDir.getFileName().toString();
+
+        KeepWorldInfo matchingConfig = LingleState.matchBoppableWorld(name);
         if (matchingConfig == null) return false;
 
         KeepCondition condition = matchingConfig.condition;
+        if (condition == KeepCondition.ALWAYS_DELETE) return true;
 
-        switch (condition) {
-            case ALWAYS_DELETE:
-                return true;
+        WorldClassifier.Classification world;
+        try {
+            world = WorldClassifier.classify(worldDir);
+        } catch (IOException e) {
+            // An unreadable world has not met any keep condition, same as before
+            return true;
+        }
 
+        switch (condition) {
             case REACHED_NETHER:
-                return !hasNetherFolder(worldDir);
+                return !world.reachedNether();
 
             case REACHED_BASTION:
-                return !hasBastion(worldDir);
+                return !world.reachedBastion();
 
             case REACHED_FORTRESS:
-                return !hasFortress(worldDir);
+                return !world.reachedFortress();
 
             case REACHED_STRONGHOLD:
-                return !hasStronghold(worldDir);
+                return !world.reachedStronghold();
 
             case REACHED_END:
-                return !hasEndFolder(worldDir);
+                return !world.reachedEnd();
 
             case WORLD_SIZE:
-                try {
-                    long sizeBytes = getDirectorySize(worldDir);
-                    long sizeMB = sizeBytes / (1024 * 1024);
-                    return sizeMB < matchingConfig.minSizeMB;
-                } catch (Exception e) {
-                    return true;
-                }
+                long sizeMB = world.sizeBytes() / (1024 * 1024);
+                return sizeMB < matchingConfig.minSizeMB;
+
+            case NETHER_CHUNKS:
+                return world.netherChunks() < matchingConfig.minChunks;
 
             default:
                 return false;
         }
     }
-
-    private static boolean hasNetherFolder(Path worldDir) {
-        Path dim1 = worldDir.resolve("DIM-1");
-        return Files.exists(dim1) && Files.isDirectory(dim1);
-    }
-
-    private static boolean hasEndFolder(Path worldDir) {
-        Path dim1 = worldDir.resolve("DIM1");
-        return Files.exists(dim1) && Files.isDirectory(dim1);
-    }
-
-    private static boolean hasBastion(Path worldDir) {
-        return hasStructure(worldDir, "Bastion");
-    }
-
-    private static boolean hasFortress(Path worldDir) {
-        return hasStructure(worldDir, "Fortress");
-    }
-
-    private static boolean hasStronghold(Path worldDir) {
-        return hasStructure(worldDir, "Stronghold");
-    }
-
-    private static boolean hasStructure(Path worldDir, String structureName) {
-        try {
-            Path dataDir = worldDir.resolve("data");
-            if (Files.exists(dataDir) && Files.isDirectory(dataDir)) {
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataDir, "*.dat")) {
-                    for (Path datFile : stream) {
-                        String fileName = datFile.getFileName().toString().toLowerCase();
-                        if (fileName.contains(structureName.toLowerCase())) {
-                            return true;
-                        }
-                    }
-                }
-            }
-
-            Path levelDat = worldDir.resolve("level.dat");
-            if (Files.exists(levelDat)) {
-                if (structureName.equals("Bastion")) {
-                    return checkForStructureFiles(worldDir, "minecraft/structures/bastion");
-                } else if (structureName.equals("Fortress")) {
-                    return checkForStructureFiles(worldDir, "minecraft/structures/fortress");
-                } else if (structureName.equals("Stronghold")) {
-                    return checkForStructureFiles(worldDir, "data/Stronghold");
-                }
-            }
-        } catch (Exception ignored) {}
-        return false;
-    }
-
-    private static boolean checkForStructureFiles(Path worldDir, String structurePath) {
-        try {
-            Path structure = worldDir.resolve(structurePath);
-            return Files.exists(structure);
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private static long getDirectorySize(Path dir) throws IOException {
-        try (var walk = Files.walk(dir)) {
-            return walk
-                .filter(Files::isRegularFile)
-                .mapToLong(p -> {
-                    try {
-                        return Files.size(p);
-                    } catch (IOException e) {
-                        return 0;
-                    }
-                })
-                .sum();
-        }
-    }
-
-    private static void deleteDir(Path dir) throws IOException {
-        if (!Files.exists(dir)) return;
-        try (var walk = Files.walk(dir)) {
-            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
-                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
-            });
-        }
-    }
 }
@@ -0,0 +1,141 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Everything WorldBopper needs to know about a world, gathered in a single walk of its directory
+// and cached until the world directory's mtime changes.
+public final class WorldClassifier {
+
+    public record Classification(boolean hasNether, boolean hasEnd, boolean hasBastion,
+                                 boolean hasFortress, boolean hasStronghold, long sizeBytes,
+                                 int netherChunks, int endChunks, WorldProgress progress) {
+
+        // With advancements on disk they are the source of truth. Otherwise fall back to generated
+        // chunks for dimensions, since the DIM folders alone exist in worlds nobody took anywhere,
+        // and to the folder markers for structures.
+        private boolean trustProgress() {
+            return progress != null && progress.hasAdvancements();
+        }
+
+        public boolean reachedNether() {
+            if (trustProgress()) return progress.reachedNether();
+            return netherChunks > 0 || (progress != null && progress.reachedNether());
+        }
+
+        public boolean reachedBastion() {
+            return trustProgress() ? progress.reachedBastion() : hasBastion;
+        }
+
+        public boolean reachedFortress() {
+            return trustProgress() ? progress.reachedFortress() : hasFortress;
+        }
+
+        public boolean reachedStronghold() {
+            return trustProgress() ? progress.reachedStronghold() : hasStronghold;
+        }
+
+        public boolean reachedEnd() {
+            if (trustProgress()) return progress.reachedEnd();
+            return endChunks > 0 || (progress != null && progress.reachedEnd());
+        }
+    }
+
+    private record Cached(long mtime, Classification classification) {}
+
+    private static final Map<Path, Cached> cache = new ConcurrentHashMap<>();
+
+    private WorldClassifier() {}
+
+    public static Classification classify(Path worldDir) throws IOException {
+        Path key = worldDir.toAbsolutePath().normalize();
+        long mtime = Files.getLastModifiedTime(key).toMillis();
+
+        Cached cached = cache.get(key);
+        if (cached != null && cached.mtime() == mtime) return cached.classification();
+
+        Classification fresh = walk(key);
+        cache.put(key, new Cached(mtime, fresh));
+        return fresh;
+    }
+
+    public static void forget(Path worldDir) {
+        cache.remove(worldDir.toAbsolutePath().normalize());
+    }
+
+    private static Classification walk(Path worldDir) throws IOException {
+        Scan scan = new Scan(worldDir);
+        Files.walkFileTree(worldDir, scan);
+        return new Classification(
+                scan.nether,
+                scan.end,
+                scan.datBastion || (scan.levelDat && scan.bastionPath),
+                scan.datFortress || (scan.levelDat && scan.fortressPath),
+                scan.datStronghold || (scan.levelDat && scan.strongholdPath),
+                scan.size,
+                scan.netherChunks,
+                scan.endChunks,
+                scan.levelDat || scan.advancements ? WorldProgress.read(worldDir) : null);
+    }
+
+    private static final class Scan extends SimpleFileVisitor<Path> {
+        private final Path root;
+        boolean nether, end, levelDat, advancements;
+        boolean datBastion, datFortress, datStronghold;
+        boolean bastionPath, fortressPath, strongholdPath;
+        long size = 0;
+        int netherChunks = 0, endChunks = 0;
+
+        Scan(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!dir.equals(root)) markPath(root.relativize(dir).toString(), true);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) size += attrs.size();
+
+            String rel = root.relativize(file).toString();
+            markPath(rel, false);
+            if (rel.equals("level.dat")) {
+                levelDat = true;
+            } else if (rel.endsWith(".mca") && rel.startsWith("DIM-1/region/")) {
+                netherChunks += RegionHeaderScanner.countChunksInRegion(file);
+            } else if (rel.endsWith(".mca") && rel.startsWith("DIM1/region/")) {
+                endChunks += RegionHeaderScanner.countChunksInRegion(file);
+            } else if (rel.startsWith("data/") && rel.indexOf('/', 5) < 0 && rel.endsWith(".dat")) {
+                String name = rel.substring(5).toLowerCase(Locale.ROOT);
+                if (name.contains("bastion")) datBastion = true;
+                if (name.contains("fortress")) datFortress = true;
+                if (name.contains("stronghold")) datStronghold = true;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void markPath(String rel, boolean directory) {
+            switch (rel) {
+                case "DIM-1" -> nether |= directory;
+                case "DIM1" -> end |= directory;
+                case "advancements" -> advancements |= directory;
+                case "minecraft/structures/bastion" -> bastionPath = true;
+                case "minecraft/structures/fortress" -> fortressPath = true;
+                case "data/Stronghold" -> strongholdPath = true;
+                default -> {}
+            }
+        }
+    }
+}
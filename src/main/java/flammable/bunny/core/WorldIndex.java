@@ -0,0 +1,257 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+// In-memory view of the worlds in one saves directory, ordered by creation time. The first query
+// for a directory lists it once and registers it with a shared watch service; from then on the
+// lingle-world-index thread applies creates and deletes in O(log n), so queries never list the
+// directory again. A directory that cannot be watched is rescanned on every query instead.
+public final class WorldIndex {
+
+    public enum Kind { WORLD, PRACTICE_MAP }
+
+    public static final class Entry {
+        public final String name;
+        public final long created;
+        public final Kind kind;
+        private long mtime;
+        private long size = -1;
+
+        private Entry(String name, long created, long mtime, Kind kind) {
+            this.name = name;
+            this.created = created;
+            this.mtime = mtime;
+            this.kind = kind;
+        }
+
+        public synchronized long mtime() { return mtime; }
+    }
+
+    // Names break ties between worlds created in the same millisecond
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(e -> e.created).thenComparing(e -> e.name);
+
+    private static final Map<Path, WorldIndex> indexes = new ConcurrentHashMap<>();
+    private static final Map<WatchKey, WorldIndex> watchKeys = new ConcurrentHashMap<>();
+    private static WatchService watcher = null;
+
+    private final Path dir;
+    private final TreeSet<Entry> entries = new TreeSet<>(ORDER);
+    private final Map<String, Entry> byName = new HashMap<>();
+    private boolean live = false;
+
+    private WorldIndex(Path dir) {
+        this.dir = dir;
+    }
+
+    // Returns the index for a directory, watching it from the first call on. The real path is the
+    // key, so a saves link and the ~/Lingle slot it points at share one index.
+    public static WorldIndex current(Path dir) {
+        Path key;
+        try {
+            key = dir.toRealPath();
+        } catch (IOException e) {
+            key = dir.toAbsolutePath().normalize();
+        }
+        WorldIndex index = indexes.computeIfAbsent(key, WorldIndex::new);
+        index.ensureWatched();
+        return index;
+    }
+
+    // Drops every watch, e.g. after a mount hid the directories they were placed on. The next
+    // query lists and watches each directory again.
+    public static void unwatchAll() {
+        for (Map.Entry<WatchKey, WorldIndex> e : watchKeys.entrySet()) {
+            e.getKey().cancel();
+            synchronized (e.getValue()) {
+                e.getValue().live = false;
+            }
+        }
+        watchKeys.clear();
+    }
+
+    private synchronized void ensureWatched() {
+        if (live) return;
+        try {
+            // Registered before listing, so nothing created in between is missed
+            watchKeys.put(dir.register(watchService(), ENTRY_CREATE, ENTRY_DELETE), this);
+            live = true;
+        } catch (IOException | UnsupportedOperationException ignored) {}
+        rescan();
+    }
+
+    private static synchronized WatchService watchService() throws IOException {
+        if (watcher == null) {
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            Thread t = new Thread(() -> watchLoop(ws), "lingle-world-index");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+            watcher = ws;
+        }
+        return watcher;
+    }
+
+    private static void watchLoop(WatchService ws) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                WorldIndex index = watchKeys.get(key);
+                if (index == null) {
+                    key.cancel();
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        index.rescan();
+                        continue;
+                    }
+                    String name = ((Path) event.context()).getFileName().toString();
+                    if (event.kind() == ENTRY_CREATE) index.onCreated(name);
+                    else if (event.kind() == ENTRY_DELETE) index.onDeleted(name);
+                }
+                // The directory itself is gone; the next query starts over
+                if (!key.reset()) {
+                    watchKeys.remove(key);
+                    synchronized (index) {
+                        index.live = false;
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public synchronized void rescan() {
+        entries.clear();
+        byName.clear();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) add(p.getFileName().toString());
+        } catch (IOException ignored) {}
+    }
+
+    synchronized void onCreated(String name) {
+        if (!byName.containsKey(name)) add(name);
+    }
+
+    synchronized void onDeleted(String name) {
+        Entry e = byName.remove(name);
+        if (e != null) entries.remove(e);
+    }
+
+    private void add(String name) {
+        if (name.startsWith(".")) return;
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(dir.resolve(name), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return;
+        }
+        Kind kind = name.startsWith("Z") ? Kind.PRACTICE_MAP : Kind.WORLD;
+        Entry e = new Entry(name, attrs.creationTime().toMillis(), attrs.lastModifiedTime().toMillis(), kind);
+        entries.add(e);
+        byName.put(name, e);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized Entry get(String name) {
+        return byName.get(name);
+    }
+
+    // All entries, oldest first.
+    public synchronized List<Entry> all() {
+        return new ArrayList<>(entries);
+    }
+
+    // The n most recently created entries of the given kind, newest first.
+    public synchronized List<Entry> newest(int n, Kind kind) {
+        List<Entry> out = new ArrayList<>(Math.min(n, entries.size()));
+        for (Iterator<Entry> it = entries.descendingIterator(); it.hasNext() && out.size() < n; ) {
+            Entry e = it.next();
+            if (e.kind == kind) out.add(e);
+        }
+        return out;
+    }
+
+    // Entries created strictly before the given time, oldest first.
+    public synchronized List<Entry> olderThan(long createdMillis) {
+        return new ArrayList<>(entries.headSet(new Entry("", createdMillis, 0, Kind.WORLD), false));
+    }
+
+    // Entries of the given kind, or all of them for null, ordered by their last modification,
+    // newest first. Only the indexed entries are stat'ed; the directory itself is not listed again.
+    public List<Entry> byRecentActivity(Kind kind) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry e : all()) {
+            if (kind != null && e.kind != kind) continue;
+            refresh(e);
+            out.add(e);
+        }
+        out.sort(Comparator.comparingLong(Entry::mtime).reversed());
+        return out;
+    }
+
+    public long sizeOf(Entry e) {
+        refresh(e);
+        synchronized (e) {
+            if (e.size < 0) e.size = directorySize(dir.resolve(e.name));
+            return e.size;
+        }
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (Entry e : all()) total += sizeOf(e);
+        return total;
+    }
+
+    private void refresh(Entry e) {
+        try {
+            long mtime = Files.getLastModifiedTime(dir.resolve(e.name), LinkOption.NOFOLLOW_LINKS).toMillis();
+            synchronized (e) {
+                if (mtime != e.mtime) {
+                    e.mtime = mtime;
+                    e.size = -1;
+                }
+            }
+        } catch (IOException ignored) {}
+    }
+
+    private static long directorySize(Path root) {
+        long[] total = {0};
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) total[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {}
+        return total[0];
+    }
+}
@@ -0,0 +1,108 @@
+package flammable.bunny.core;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// What a player actually did in a world, read from level.dat and the per-player advancement and
+// stats files instead of guessing from which folders happen to exist.
+public record WorldProgress(Set<String> dimensions, Set<String> advancements, long playTimeTicks,
+                            boolean hasAdvancements) {
+
+    public static final String NETHER = "minecraft:the_nether";
+    public static final String END = "minecraft:the_end";
+
+    private static final Set<String> LEVEL_DAT_TAGS = Set.of("Data.Player.Dimension", "Data.Time");
+
+    public boolean reachedNether() {
+        return dimensions.contains(NETHER) || advancements.contains("minecraft:nether/root");
+    }
+
+    public boolean reachedBastion() {
+        return advancements.contains("minecraft:nether/find_bastion");
+    }
+
+    public boolean reachedFortress() {
+        return advancements.contains("minecraft:nether/find_fortress");
+    }
+
+    public boolean reachedStronghold() {
+        return advancements.contains("minecraft:story/follow_ender_eye");
+    }
+
+    public boolean reachedEnd() {
+        return dimensions.contains(END) || advancements.contains("minecraft:end/root")
+                || advancements.contains("minecraft:story/enter_the_end");
+    }
+
+    // Returns null when the world has neither a level.dat nor any advancements yet.
+    public static WorldProgress read(Path worldDir) {
+        Set<String> dimensions = new HashSet<>();
+        Set<String> advancements = new HashSet<>();
+        long playTime = 0;
+        boolean sawLevelDat = false;
+        boolean sawAdvancements = false;
+
+        Path levelDat = worldDir.resolve("level.dat");
+        if (Files.isRegularFile(levelDat)) {
+            try {
+                Map<String, Object> tags = NbtReader.read(levelDat, LEVEL_DAT_TAGS);
+                sawLevelDat = true;
+                String dim = dimensionName(tags.get("Data.Player.Dimension"));
+                if (dim != null) dimensions.add(dim);
+                if (tags.get("Data.Time") instanceof Long time) playTime = time;
+            } catch (IOException ignored) {}
+        }
+
+        Path advDir = worldDir.resolve("advancements");
+        if (Files.isDirectory(advDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(advDir, "*.json")) {
+                for (Path f : files) {
+                    JSONObject obj = new JSONObject(Files.readString(f));
+                    for (String key : obj.keySet()) {
+                        JSONObject adv = obj.optJSONObject(key);
+                        if (adv != null && adv.optBoolean("done", false)) advancements.add(key);
+                    }
+                    sawAdvancements = true;
+                }
+            } catch (Exception ignored) {}
+        }
+
+        Path statsDir = worldDir.resolve("stats");
+        if (Files.isDirectory(statsDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(statsDir, "*.json")) {
+                for (Path f : files) {
+                    JSONObject custom = new JSONObject(Files.readString(f))
+                            .optJSONObject("stats", new JSONObject())
+                            .optJSONObject("minecraft:custom", new JSONObject());
+                    // Renamed to play_time in 1.17
+                    long ticks = Math.max(custom.optLong("minecraft:play_one_minute", 0),
+                            custom.optLong("minecraft:play_time", 0));
+                    playTime = Math.max(playTime, ticks);
+                }
+            } catch (Exception ignored) {}
+        }
+
+        if (!sawLevelDat && !sawAdvancements) return null;
+        return new WorldProgress(Set.copyOf(dimensions), Set.copyOf(advancements), playTime, sawAdvancements);
+    }
+
+    private static String dimensionName(Object raw) {
+        if (raw instanceof String s) return s;
+        // Pre-1.16 worlds store the dimension as a number
+        if (raw instanceof Integer id) {
+            return switch (id) {
+                case -1 -> NETHER;
+                case 1 -> END;
+                default -> "minecraft:overworld";
+            };
+        }
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+package flammable.bunny.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class WorldReclaimer {
+
+    private static final int RECLAIM_THREADS = 2;
+    private static final int UNLINK_BATCH = 256;
+    private static final String LINGLE_TRASH = ".trash";
+    private static final String LOCAL_TRASH = ".lingle-trash";
+
+    private static final AtomicInteger threadIds = new AtomicInteger();
+    private static final ThreadPoolExecutor pool = createPool();
+
+    private WorldReclaimer() {}
+
+    private static ThreadPoolExecutor createPool() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                RECLAIM_THREADS, RECLAIM_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "lingle-reclaimer-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static Path lingleTrashDir() {
+        return Path.of(System.getProperty("user.home")).resolve("Lingle").resolve(LINGLE_TRASH);
+    }
+
+    // Moves a world out of its saves directory with a single rename and unlinks it in the background.
+    // Worlds on a different filesystem than ~/Lingle go to a hidden trash next to their saves folder.
+    public static void discard(Path world) {
+        Path detached = detach(world);
+        if (detached != null) reclaim(detached);
+    }
+
+    // Same as discard, but unlinks on the calling thread for callers that need the space back right away.
+    public static void discardNow(Path world) {
+        Path detached = detach(world);
+        if (detached != null) deleteTree(detached);
+    }
+
+    private static Path detach(Path world) {
+        if (!Files.exists(world, LinkOption.NOFOLLOW_LINKS)) return null;
+        if (Files.isSymbolicLink(world) || !Files.isDirectory(world, LinkOption.NOFOLLOW_LINKS)) {
+            try { Files.deleteIfExists(world); } catch (IOException ignored) {}
+            return null;
+        }
+
+        Path trashed = null;
+        if (Files.isDirectory(lingleTrashDir().getParent())) trashed = moveToTrash(world, lingleTrashDir());
+        if (trashed == null && world.getParent() != null && world.getParent().getParent() != null) {
+            trashed = moveToTrash(world, localTrashDir(world.getParent()));
+        }
+        return trashed != null ? trashed : world;
+    }
+
+    // The hidden trash next to a saves folder, on the same filesystem as the instance
+    static Path localTrashDir(Path saves) {
+        return saves.resolveSibling(LOCAL_TRASH);
+    }
+
+    // Queues an already detached path for deletion.
+    public static void reclaim(Path path) {
+        pool.execute(() -> deleteTree(path));
+    }
+
+    // Picks up whatever a previous session left in the trash, including the hidden trash folders
+    // next to the saves of every launcher instance.
+    public static void reclaimLeftovers() {
+        reclaimContents(lingleTrashDir());
+        Path instances = Path.of(System.getProperty("user.home")).resolve(".local/share/PrismLauncher/instances");
+        if (!Files.isDirectory(instances)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(instances)) {
+            for (Path inst : ds) reclaimContents(localTrashDir(inst.resolve("minecraft").resolve("saves")));
+        } catch (IOException ignored) {}
+    }
+
+    private static void reclaimContents(Path trash) {
+        if (!Files.isDirectory(trash, LinkOption.NOFOLLOW_LINKS)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(trash)) {
+            for (Path p : ds) reclaim(p);
+        } catch (IOException ignored) {}
+    }
+
+    // Unlinks everything currently in ~/Lingle/.trash on the calling thread.
+    public static void drainLingleTrash() {
+        Path trash = lingleTrashDir();
+        if (!Files.isDirectory(trash)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(trash)) {
+            for (Path p : ds) deleteTree(p);
+        } catch (IOException ignored) {}
+    }
+
+    private static Path moveToTrash(Path world, Path trashDir) {
+        try {
+            Files.createDirectories(trashDir);
+            Path target = trashDir.resolve(world.getFileName() + "-" + System.nanoTime());
+            return Files.move(world, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static void deleteTree(Path root) {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) return;
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                private int unlinked = 0;
+
+                private void unlink(Path p) {
+                    try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+                    // Give the instances a chance at the disk between batches
+                    if (++unlinked % UNLINK_BATCH == 0) Thread.yield();
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    unlink(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    unlink(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {}
+    }
+}
@@ -179,6 +179,53 @@ public class LingleUI extends JFrame {
             }
         });
 
+        JPanel tmpfsSizeRow = leftRow();
+        JLabel tmpfsSizeLbl = new JLabel("TMPFS size (MB, 0 = auto):");
+        tmpfsSizeLbl.setForeground(TXT);
+        tmpfsSizeLbl.setFont(UI_FONT);
+        JSpinner tmpfsSizeSpinner = new JSpinner(new javax.swing.SpinnerNumberModel(Math.max(0, LingleState.tmpfsSizeMb), 0, 1048576, 256));
+        tmpfsSizeSpinner.setPreferredSize(new Dimension(100, 28));
+        ((JSpinner.DefaultEditor) tmpfsSizeSpinner.getEditor()).getTextField().setBackground(new Color(60,63,65));
+        ((JSpinner.DefaultEditor) tmpfsSizeSpinner.getEditor()).getTextField().setForeground(TXT);
+        JButton tmpfsResizeBtn = makeButton("Apply Size", 120);
+        tmpfsSizeRow.add(tmpfsSizeLbl);
+        tmpfsSizeRow.add(tmpfsSizeSpinner);
+        tmpfsSizeRow.add(tmpfsResizeBtn);
+        mainListContainer.add(tmpfsSizeRow);
+
+        tmpfsResizeBtn.addActionListener(ev -> {
+            logAction("User clicked: Apply TMPFS Size");
+            LingleState.tmpfsSizeMb = Math.max(0, ((Number) tmpfsSizeSpinner.getValue()).intValue());
+            LingleState.saveState();
+            tmpfsResizeBtn.setEnabled(false);
+            new Thread(() -> {
+                String result;
+                try {
+                    // Applying is when the auto size is measured again
+                    int sizeMb = LingleState.tmpfsSizeMb > 0 ? LingleState.tmpfsSizeMb : TmpfsSizer.recomputeAutoSize();
+                    if (TmpfsSizer.isMounted()) {
+                        TmpfsSizer.applyLive(sizeMb);
+                        result = "TMPFS resized to " + sizeMb + " MB.";
+                    } else if ("zram".equals(TmpfsSizer.ramMountType())) {
+                        // A zram device cannot be resized while it is mounted
+                        TmpfsScriptManager.ensureScriptsPresent();
+                        result = "zram device keeps its size until TMPFS is disabled and enabled again (then " + sizeMb + " MB).";
+                    } else {
+                        TmpfsScriptManager.ensureScriptsPresent();
+                        result = "TMPFS will be mounted with " + sizeMb + " MB.";
+                    }
+                } catch (IOException ex) {
+                    logError("Failed to resize TMPFS", ex);
+                    result = "Failed to resize TMPFS:\n" + ex.getMessage();
+                }
+                final String msg = result;
+                SwingUtilities.invokeLater(() -> {
+                    tmpfsResizeBtn.setEnabled(true);
+                    showDarkMessage(this, "TMPFS", msg);
+                });
+            }).start();
+        });
+
         // ===== Instances =====
         JLabel instancesLabel = new JLabel("Instances:");
         instancesLabel.setForeground(TXT);
@@ -307,12 +354,18 @@ public class LingleUI extends JFrame {
 
         JButton linkPracticeBtn = makeButton("Link Practice Maps", 220);
         JButton removePracticeBtn = makeButton("Remove Practice Maps", 220);
+        JButton resetPracticeBtn = makeButton("Reset Practice Maps", 200);
+        JCheckBox practiceInRamCheck = createStyledCheckBox("Keep practice maps in RAM");
+        practiceInRamCheck.setSelected(PracticeMapMaterializer.enabled());
+        resetPracticeBtn.setEnabled(PracticeMapMaterializer.enabled() && !LingleState.selectedPracticeMaps.isEmpty());
         JButton createDirsBtn = makeButton("Create Directories on Startup", 240);
 
         JPanel linkRow = leftRow();
         linkRow.add(linkPracticeBtn);
+        linkRow.add(practiceInRamCheck);
         JPanel removePracticeRow = leftRow();
         removePracticeRow.add(removePracticeBtn);
+        removePracticeRow.add(resetPracticeBtn);
         JPanel dirsRow = leftRow();
         dirsRow.add(createDirsBtn);
 
@@ -475,11 +528,14 @@ public class LingleUI extends JFrame {
             }
             logInfo("Selected practice maps: " + String.join(", ", chosen));
             try {
+                LinkInstancesService.setPracticeMapMode(practiceInRamCheck.isSelected()
+                        ? PracticeMapMaterializer.MODE_MATERIALIZE : PracticeMapMaterializer.MODE_SYMLINK);
                 LingleState.selectedPracticeMaps = chosen;
                 LingleState.practiceMaps = true;
                 LingleState.saveState();
                 logInfo("Linking practice maps...");
                 LinkInstancesService.linkPracticeMapsNow();
+                resetPracticeBtn.setEnabled(PracticeMapMaterializer.enabled());
                 logSuccess("Practice maps linked successfully");
                 showDarkMessage(this, "Done", "Practice maps linked.");
             } catch (IOException ex) {
@@ -516,6 +572,7 @@ public class LingleUI extends JFrame {
             try {
                 logInfo("Removing practice map links...");
                 LinkInstancesService.removePracticeMaps();
+                resetPracticeBtn.setEnabled(false);
                 logSuccess("Practice maps removed successfully");
                 showDarkMessage(this, "Done", "Practice map links removed.");
             } catch (IOException ex) {
@@ -524,6 +581,17 @@ public class LingleUI extends JFrame {
             }
         });
 
+        resetPracticeBtn.addActionListener(e -> {
+            logAction("User clicked: Reset Practice Maps");
+            try {
+                LinkInstancesService.resetPracticeMaps();
+                showDarkMessage(this, "Done", "Practice maps reset.");
+            } catch (IOException ex) {
+                logError("Failed to reset practice maps", ex);
+                showDarkMessage(this, "Error", "Failed to reset practice maps:\n" + ex.getMessage());
+            }
+        });
+
         createDirsBtn.addActionListener(e -> {
             logAction("User clicked: Create Directories on Startup");
             int choice = new CreateDirsConfirmationDialog(this).showDialog();
@@ -1092,11 +1160,6 @@ public class LingleUI extends JFrame {
 
         packagesButton.addActionListener(e -> {
             logAction("User clicked: Zip Packages for Run Submission");
-            if (!DependencyInstaller.ensureDeps(this)) {
-                logError("Dependencies check failed");
-                return;
-            }
-
             JFileChooser fc = new JFileChooser();
             fc.setDialogTitle("Select output folder for SRC zip");
             fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
@@ -1126,29 +1189,9 @@ public class LingleUI extends JFrame {
             Thread worker = new Thread(() -> {
                 int ec;
                 try {
-                    Path script = PackagesforRunSubmissionZipper.install(outDir);
-                    logCommand("python3 " + script + " " + outDir);
-                    Process p = new ProcessBuilder("python3", script.toString(), outDir.toString()).start();
-
-                    // Log stdout
-                    try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(p.getInputStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            logOutput(line);
-                        }
-                    }
-                    // Log stderr
-                    try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(p.getErrorStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            logOutput(line);
-                        }
-                    }
-
-                    ec = p.waitFor();
-                    logInfo("Python script exited with code: " + ec);
+                    Path zipFile = PackagesforRunSubmissionZipper.createSubmission(outDir);
+                    logInfo("Submission written to " + zipFile);
+                    ec = 0;
                 } catch (Exception ex) {
                     logError("Package creation failed", ex);
                     ec = 1;
@@ -1171,7 +1214,19 @@ public class LingleUI extends JFrame {
         });
 
 
+        JCheckBox prebuildToggle = createStyledCheckBox("Pre-build submission zips in the background");
+        prebuildToggle.setSelected(LingleState.submissionCacheEnabled);
+        prebuildToggle.setAlignmentX(Component.CENTER_ALIGNMENT);
+        prebuildToggle.addActionListener(e -> {
+            LingleState.submissionCacheEnabled = prebuildToggle.isSelected();
+            LingleState.saveState();
+            logAction("User toggled submission pre-building: " + (LingleState.submissionCacheEnabled ? "ON" : "OFF"));
+            SubmissionCache.start();
+        });
+
         settingsPanel.add(Box.createVerticalGlue());
+        settingsPanel.add(prebuildToggle);
+        settingsPanel.add(Box.createVerticalStrut(5));
         settingsPanel.add(packagesButton);
         settingsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
 
@@ -1413,6 +1468,24 @@ public class LingleUI extends JFrame {
         setSize(530, 790);
         setLocationRelativeTo(null);
         setVisible(true);
+
+        if (TmpfsScriptManager.needsMount()) SwingUtilities.invokeLater(this::offerMount);
+    }
+
+    // TMPFS is on but ~/Lingle is a plain folder, e.g. its fstab entry was removed
+    private void offerMount() {
+        if (!showDarkConfirm(this, "TMPFS",
+                "TMPFS is enabled but ~/Lingle is not mounted, so worlds are written to disk.\n"
+                        + "Mount it now? Files already in ~/Lingle are hidden until it is unmounted.")) {
+            logAction("User declined mounting TMPFS");
+            return;
+        }
+        logAction("User clicked: Mount TMPFS");
+        new Thread(() -> {
+            boolean ok = TmpfsScriptManager.mountAgain();
+            SwingUtilities.invokeLater(() -> showDarkMessage(this, "TMPFS",
+                    ok ? "~/Lingle is mounted again." : "Mounting ~/Lingle failed, see the log."));
+        }).start();
     }
 
     private static JScrollPane makeScroll(JPanel body) {
@@ -1465,6 +1538,10 @@ public class LingleUI extends JFrame {
         new Thread(() -> {
             int exitCode;
             try {
+                if (!runDisable) {
+                    if (LingleState.tmpfsSizeMb == 0) TmpfsSizer.recomputeAutoSize();
+                    TmpfsScriptManager.ensureScriptsPresent();
+                }
                 Path home = Path.of(System.getProperty("user.home"));
                 Path script = home.resolve(".local/share/lingle/scripts/")
                         .resolve(runDisable ? "tmpfsdisable.sh" : "tmpfsenable.sh");
@@ -1494,6 +1571,8 @@ public class LingleUI extends JFrame {
 
                 exitCode = p.waitFor();
                 logInfo("Script execution completed with exit code: " + exitCode);
+                // Mounting or unmounting swaps the slot folders under any watched index
+                WorldIndex.unwatchAll();
             } catch (Exception ex) {
                 logError("TMPFS toggle failed", ex);
                 exitCode = 1;
@@ -1537,7 +1616,14 @@ public class LingleUI extends JFrame {
 
         JCheckBox enableWorldBopper = createStyledCheckBox("Enable WorldBopper");
         enableWorldBopper.setSelected(LingleState.worldBopperEnabled);
-        topPanel.add(enableWorldBopper, BorderLayout.NORTH);
+        JCheckBox evacuateKept = createStyledCheckBox("Move kept worlds out of TMPFS to disk");
+        evacuateKept.setSelected(LingleState.evacuateKeptWorlds);
+        JPanel toggles = new JPanel();
+        toggles.setLayout(new BoxLayout(toggles, BoxLayout.Y_AXIS));
+        toggles.setBackground(BG);
+        toggles.add(enableWorldBopper);
+        toggles.add(evacuateKept);
+        topPanel.add(toggles, BorderLayout.NORTH);
 
         JLabel instanceLabel = new JLabel("Select instances for WorldBopper:");
         instanceLabel.setForeground(TXT);
@@ -1650,15 +1736,28 @@ public class LingleUI extends JFrame {
                 JOptionPane.YES_NO_OPTION,
                 JOptionPane.WARNING_MESSAGE);
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    logInfo("Running WorldBopper...");
-                    flammable.bunny.core.WorldBopperManager.runOnce();
-                    logSuccess("Worlds cleared successfully");
-                    showDarkMessage(this, "Done", "Worlds cleared");
-                } catch (Exception ex) {
-                    logError("Failed to clear worlds", ex);
-                    showDarkMessage(this, "Error", "Failed to clear worlds: " + ex.getMessage());
-                }
+                logInfo("Running WorldBopper...");
+                clearNowBtn.setEnabled(false);
+                // Classifying every world can take a while on big saves folders
+                new Thread(() -> {
+                    String error = null;
+                    try {
+                        flammable.bunny.core.WorldBopperManager.runOnce();
+                    } catch (Exception ex) {
+                        logError("Failed to clear worlds", ex);
+                        error = ex.getMessage();
+                    }
+                    final String failure = error;
+                    SwingUtilities.invokeLater(() -> {
+                        clearNowBtn.setEnabled(true);
+                        if (failure == null) {
+                            logSuccess("Worlds cleared successfully");
+                            showDarkMessage(this, "Done", "Worlds cleared");
+                        } else {
+                            showDarkMessage(this, "Error", "Failed to clear worlds: " + failure);
+                        }
+                    });
+                }, "lingle-clear-worlds").start();
             } else {
                 logInfo("Clear worlds cancelled by user");
             }
@@ -1696,8 +1795,9 @@ public class LingleUI extends JFrame {
                     flammable.bunny.core.WorldBopperConfig.KeepCondition condition =
                         (flammable.bunny.core.WorldBopperConfig.KeepCondition) row.conditionCombo.getSelectedItem();
                     int sizeMB = ((Number)row.sizeSpinner.getValue()).intValue();
-                    LingleState.boppableWorlds.add(new flammable.bunny.core.WorldBopperConfig.KeepWorldInfo(prefix, condition, sizeMB));
-                    logInfo("Boppable world rule: prefix='" + prefix + "', condition=" + condition + ", sizeMB=" + sizeMB);
+                    int minChunks = ((Number)row.chunksSpinner.getValue()).intValue();
+                    LingleState.boppableWorlds.add(new flammable.bunny.core.WorldBopperConfig.KeepWorldInfo(prefix, condition, sizeMB, minChunks));
+                    logInfo("Boppable world rule: prefix='" + prefix + "', condition=" + condition + ", sizeMB=" + sizeMB + ", minChunks=" + minChunks);
                 }
             }
 
@@ -1708,7 +1808,9 @@ public class LingleUI extends JFrame {
             }
 
             LingleState.worldBopperEnabled = enableWorldBopper.isSelected();
+            LingleState.evacuateKeptWorlds = evacuateKept.isSelected();
             LingleState.saveState();
+            flammable.bunny.core.WorldBopperManager.startDaemon();
             logSuccess("WorldBopper configuration saved - " + (LingleState.worldBopperEnabled ? "enabled" : "disabled"));
             dlg.dispose();
             showDarkMessage(this, "Updated", "WorldBopper configuration saved");
@@ -1729,6 +1831,8 @@ public class LingleUI extends JFrame {
         JComboBox<flammable.bunny.core.WorldBopperConfig.KeepCondition> conditionCombo;
         JSpinner sizeSpinner;
         JLabel sizeLabel;
+        JSpinner chunksSpinner;
+        JLabel chunksLabel;
 
         PrefixRow(flammable.bunny.core.WorldBopperConfig.KeepWorldInfo info, int index, Runnable onRemove) {
             panel = new JPanel();
@@ -1793,10 +1897,22 @@ public class LingleUI extends JFrame {
             ((JSpinner.DefaultEditor) sizeSpinner.getEditor()).getTextField().setBackground(new Color(60,63,65));
             ((JSpinner.DefaultEditor) sizeSpinner.getEditor()).getTextField().setForeground(TXT);
 
-            // Show/hide size spinner based on condition
+            chunksLabel = new JLabel("(chunks):");
+            chunksLabel.setForeground(TXT);
+            chunksLabel.setFont(UI_FONT);
+
+            chunksSpinner = new JSpinner(new javax.swing.SpinnerNumberModel(Math.max(1, info.minChunks), 1, 100000, 10));
+            chunksSpinner.setPreferredSize(new Dimension(80, 28));
+            ((JSpinner.DefaultEditor) chunksSpinner.getEditor()).getTextField().setBackground(new Color(60,63,65));
+            ((JSpinner.DefaultEditor) chunksSpinner.getEditor()).getTextField().setForeground(TXT);
+
+            // Show/hide size and chunk spinners based on condition
             boolean showSize = info.condition == flammable.bunny.core.WorldBopperConfig.KeepCondition.WORLD_SIZE;
             sizeLabel.setVisible(showSize);
             sizeSpinner.setVisible(showSize);
+            boolean showChunks = info.condition == flammable.bunny.core.WorldBopperConfig.KeepCondition.NETHER_CHUNKS;
+            chunksLabel.setVisible(showChunks);
+            chunksSpinner.setVisible(showChunks);
 
             conditionCombo.addActionListener(ev -> {
                 flammable.bunny.core.WorldBopperConfig.KeepCondition selected =
@@ -1804,6 +1920,9 @@ public class LingleUI extends JFrame {
                 boolean show = selected == flammable.bunny.core.WorldBopperConfig.KeepCondition.WORLD_SIZE;
                 sizeLabel.setVisible(show);
                 sizeSpinner.setVisible(show);
+                boolean showC = selected == flammable.bunny.core.WorldBopperConfig.KeepCondition.NETHER_CHUNKS;
+                chunksLabel.setVisible(showC);
+                chunksSpinner.setVisible(showC);
                 row2.revalidate();
                 row2.repaint();
             });
@@ -1812,6 +1931,8 @@ public class LingleUI extends JFrame {
             row2.add(conditionCombo);
             row2.add(sizeLabel);
             row2.add(sizeSpinner);
+            row2.add(chunksLabel);
+            row2.add(chunksSpinner);
 
             panel.add(row2);
         }